@@ -2,23 +2,17 @@ package uk.gov.ida.notification.eidassaml;
 
 import engineering.reliability.gds.metrics.bundle.PrometheusBundle;
 import io.dropwizard.Application;
-import io.dropwizard.client.JerseyClientBuilder;
-import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 
-import javax.ws.rs.client.Client;
-
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.opensaml.core.config.InitializationException;
 import org.opensaml.core.config.InitializationService;
 import se.litsec.opensaml.saml2.common.response.MessageReplayChecker;
 import uk.gov.ida.dropwizard.logstash.LogstashBundle;
-import uk.gov.ida.jerseyclient.ErrorHandlingClient;
-import uk.gov.ida.jerseyclient.JsonResponseProcessor;
 import uk.gov.ida.notification.VerifySamlInitializer;
 import uk.gov.ida.notification.eidassaml.saml.validation.EidasAuthnRequestValidator;
 import uk.gov.ida.notification.eidassaml.saml.validation.components.AssertionConsumerServiceValidator;
@@ -37,7 +31,6 @@ import uk.gov.ida.notification.shared.istio.IstioHeaderMapperFilter;
 import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLoggingFilter;
 import uk.gov.ida.notification.shared.proxy.MetatronProxy;
-import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
 
 import java.security.Security;
 
@@ -82,7 +75,7 @@ public class EidasSamlParserApplication extends Application<EidasSamlParserConfi
         ProxyNodeHealthCheck proxyNodeHealthCheck = new ProxyNodeHealthCheck("parser");
         environment.healthChecks().register(proxyNodeHealthCheck.getName(), proxyNodeHealthCheck);
 
-        metatronProxy = createMetatronProxy(configuration, environment);
+        metatronProxy = configuration.getMetatronCache().buildMetatronProxy(configuration.getMetatronUri(), environment);
 
         EidasAuthnRequestValidator eidasAuthnRequestValidator = createEidasAuthnRequestValidator(configuration);
 
@@ -131,16 +124,4 @@ public class EidasSamlParserApplication extends Application<EidasSamlParserConfi
                 new AssertionConsumerServiceValidator(metatronProxy)
         );
     }
-
-    private MetatronProxy createMetatronProxy(EidasSamlParserConfiguration configuration, Environment environment) {
-        JerseyClientConfiguration jerseyConfig = new JerseyClientConfiguration();
-        Client client = new JerseyClientBuilder(environment).using(jerseyConfig).build("metatron-client");
-        return new MetatronProxy(configuration.getMetatronUri(),
-            new ProxyNodeJsonClient(
-                    new ErrorHandlingClient(client),
-                    new JsonResponseProcessor(environment.getObjectMapper()),
-                    new IstioHeaderStorage()
-            )
-        );
-    }
 }
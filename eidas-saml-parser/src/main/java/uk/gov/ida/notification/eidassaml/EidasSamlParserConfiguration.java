@@ -3,6 +3,7 @@ package uk.gov.ida.notification.eidassaml;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import engineering.reliability.gds.metrics.config.PrometheusConfiguration;
 import io.dropwizard.Configuration;
+import uk.gov.ida.notification.configuration.MetatronCacheConfiguration;
 import uk.gov.ida.notification.configuration.ReplayCheckerConfiguration;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -25,10 +26,19 @@ public class EidasSamlParserConfiguration extends Configuration implements Prome
     @JsonProperty
     private URI metatronUri;
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private MetatronCacheConfiguration metatronCache = new MetatronCacheConfiguration();
+
     public URI getMetatronUri() {
         return metatronUri;
     }
 
+    public MetatronCacheConfiguration getMetatronCache() {
+        return metatronCache;
+    }
+
     public ReplayCheckerConfiguration getReplayChecker() {
         return replayChecker;
     }
@@ -5,9 +5,6 @@ import org.opensaml.core.xml.io.UnmarshallingException;
 import org.opensaml.saml.saml2.core.AuthnContextClassRef;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.opensaml.saml.saml2.core.NameID;
-import org.opensaml.security.credential.BasicCredential;
-import org.opensaml.security.credential.Credential;
-import org.opensaml.security.credential.UsageType;
 import org.slf4j.event.Level;
 import se.litsec.opensaml.utils.ObjectUtils;
 import uk.gov.ida.notification.contracts.EidasSamlParserRequest;
@@ -29,9 +26,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import java.io.ByteArrayInputStream;
 import java.net.URI;
-import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.util.Base64;
 import java.util.Comparator;
 import java.util.stream.Collectors;
@@ -43,11 +38,19 @@ public class EidasSamlResource {
 
     private final EidasAuthnRequestValidator eidasAuthnRequestValidator;
     private final MetatronProxy metatronProxy;
+    private final SigningCredentialCache signingCredentialCache;
 
     public EidasSamlResource(EidasAuthnRequestValidator eidasAuthnRequestValidator,
                              MetatronProxy metatronProxy) {
+        this(eidasAuthnRequestValidator, metatronProxy, new SigningCredentialCache());
+    }
+
+    public EidasSamlResource(EidasAuthnRequestValidator eidasAuthnRequestValidator,
+                             MetatronProxy metatronProxy,
+                             SigningCredentialCache signingCredentialCache) {
         this.eidasAuthnRequestValidator = eidasAuthnRequestValidator;
         this.metatronProxy = metatronProxy;
+        this.signingCredentialCache = signingCredentialCache;
     }
 
     @POST
@@ -56,7 +59,7 @@ public class EidasSamlResource {
         final AuthnRequest authnRequest = unmarshallRequest(request);
         final CountryMetadataResponse metatronResponse = getMetatronResponse(authnRequest);
 
-        eidasAuthnRequestValidator.validate(authnRequest, this.getSigningCredential(metatronResponse.getSamlSigningCertX509()));
+        eidasAuthnRequestValidator.validate(authnRequest, signingCredentialCache.getSigningCredential(metatronResponse.getSamlSigningCertX509()));
 
         final String assertionConsumerServiceURL =
                 authnRequest.getAssertionConsumerServiceURL() != null ?
@@ -114,17 +117,4 @@ public class EidasSamlResource {
             throw new SamlTransformationErrorException("Issuer is missing", Level.WARN);
         }
     }
-
-    private Credential getSigningCredential(String base64X509Certificate) throws CertificateException {
-        CertificateFactory certificateFactory = CertificateFactory.getInstance("X509");
-
-        byte[] decodedCert = Base64.getMimeDecoder().decode(base64X509Certificate);
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(decodedCert);
-        Certificate certificate = certificateFactory.generateCertificate(inputStream);
-
-        BasicCredential signingCredential = new BasicCredential(certificate.getPublicKey());
-        signingCredential.setUsageType(UsageType.SIGNING);
-
-        return signingCredential;
-    }
 }
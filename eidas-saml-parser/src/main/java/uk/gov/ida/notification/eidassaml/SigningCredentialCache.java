@@ -0,0 +1,66 @@
+package uk.gov.ida.notification.eidassaml;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.opensaml.security.credential.BasicCredential;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.UsageType;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.Base64;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Parses each connector's signing certificate once and reuses the resulting credential for
+ * every AuthnRequest checked against it. Entries are keyed by the certificate as metatron
+ * returns it, so a rotated certificate simply becomes a new entry.
+ */
+public class SigningCredentialCache {
+
+    private static final long DEFAULT_MAX_ENTRIES = 100;
+
+    private final Cache<String, Credential> credentials;
+
+    public SigningCredentialCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SigningCredentialCache(long maxEntries) {
+        this.credentials = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    public Credential getSigningCredential(String base64X509Certificate) throws CertificateException {
+        try {
+            return credentials.get(base64X509Certificate, () -> parseSigningCredential(base64X509Certificate));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CertificateException) {
+                throw (CertificateException) e.getCause();
+            }
+            throw new CertificateException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Credential parseSigningCredential(String base64X509Certificate) throws CertificateException {
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X509");
+
+        byte[] decodedCert = Base64.getMimeDecoder().decode(base64X509Certificate);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(decodedCert);
+        Certificate certificate = certificateFactory.generateCertificate(inputStream);
+
+        BasicCredential signingCredential = new BasicCredential(certificate.getPublicKey());
+        signingCredential.setUsageType(UsageType.SIGNING);
+
+        return signingCredential;
+    }
+}
@@ -0,0 +1,43 @@
+package uk.gov.ida.notification.eidassaml;
+
+import org.junit.Test;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.security.credential.UsageType;
+
+import java.security.cert.CertificateException;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.METADATA_SIGNING_A_PUBLIC_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_SIGNING_CERT;
+
+public class SigningCredentialCacheTest {
+
+    private final SigningCredentialCache cache = new SigningCredentialCache();
+
+    @Test
+    public void shouldReuseCredentialForSameCertificate() throws CertificateException {
+        Credential first = cache.getSigningCredential(METADATA_SIGNING_A_PUBLIC_CERT);
+        Credential second = cache.getSigningCredential(METADATA_SIGNING_A_PUBLIC_CERT);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getUsageType()).isEqualTo(UsageType.SIGNING);
+        assertThat(first.getPublicKey()).isNotNull();
+    }
+
+    @Test
+    public void shouldBuildSeparateCredentialsForDifferentCertificates() throws CertificateException {
+        Credential first = cache.getSigningCredential(METADATA_SIGNING_A_PUBLIC_CERT);
+        Credential second = cache.getSigningCredential(TEST_RP_PUBLIC_SIGNING_CERT);
+
+        assertThat(second.getPublicKey()).isNotEqualTo(first.getPublicKey());
+    }
+
+    @Test
+    public void shouldThrowCertificateExceptionForInvalidCertificate() {
+        String notACertificate = Base64.getEncoder().encodeToString("not a certificate".getBytes());
+
+        assertThrows(CertificateException.class, () -> cache.getSigningCredential(notACertificate));
+    }
+}
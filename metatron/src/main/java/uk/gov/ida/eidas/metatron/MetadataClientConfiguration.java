@@ -0,0 +1,48 @@
+package uk.gov.ida.eidas.metatron;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+public class MetadataClientConfiguration {
+
+    @Min(1)
+    @JsonProperty
+    private int maxConnections = 50;
+
+    @Min(1)
+    @JsonProperty
+    private int maxConnectionsPerRoute = 2;
+
+    @Min(1)
+    @JsonProperty
+    private int connectTimeoutMillis = 5_000;
+
+    @Min(1)
+    @JsonProperty
+    private int readTimeoutMillis = 5_000;
+
+    @Min(1)
+    @JsonProperty
+    private long connectionTimeToLiveSeconds = 900;
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public long getConnectionTimeToLiveSeconds() {
+        return connectionTimeToLiveSeconds;
+    }
+}
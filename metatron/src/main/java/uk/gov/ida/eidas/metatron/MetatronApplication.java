@@ -1,5 +1,7 @@
 package uk.gov.ida.eidas.metatron;
 
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.codahale.metrics.servlets.HealthCheckServlet;
 import engineering.reliability.gds.metrics.bundle.PrometheusBundle;
 import io.dropwizard.Application;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
@@ -14,10 +16,17 @@ import uk.gov.ida.dropwizard.logstash.LogstashBundle;
 import uk.gov.ida.eidas.metatron.domain.ConfigLoaderUtil;
 import uk.gov.ida.eidas.metatron.domain.EidasConfig;
 import uk.gov.ida.eidas.metatron.domain.KeyStoreModule;
+import uk.gov.ida.eidas.metatron.domain.MetadataBackingStore;
+import uk.gov.ida.eidas.metatron.domain.MetadataChangeLog;
+import uk.gov.ida.eidas.metatron.domain.MetadataChangeMonitor;
+import uk.gov.ida.eidas.metatron.domain.MetadataClientFactory;
+import uk.gov.ida.eidas.metatron.domain.MetadataFetchListener;
 import uk.gov.ida.eidas.metatron.domain.MetadataResolverService;
 import uk.gov.ida.eidas.metatron.exceptions.MetatronClientExceptionMapper;
 import uk.gov.ida.eidas.metatron.exceptions.MetatronServerExceptionMapper;
+import uk.gov.ida.eidas.metatron.health.CountryMetadataHealthCheck;
 import uk.gov.ida.eidas.metatron.health.CountryMetadataHealthMetrics;
+import uk.gov.ida.eidas.metatron.health.MetadataFetchMetrics;
 import uk.gov.ida.eidas.metatron.health.MetatronHealthCheck;
 import uk.gov.ida.eidas.metatron.resources.MetatronResource;
 import uk.gov.ida.notification.shared.istio.IstioHeaderMapperFilter;
@@ -27,12 +36,17 @@ import uk.gov.ida.saml.metadata.factories.CredentialResolverFactory;
 import uk.gov.ida.saml.metadata.factories.MetadataResolverFactory;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.security.Security;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class MetatronApplication extends Application<MetatronConfiguration> {
 
+    private static final int MAX_RETAINED_VERSIONS = 100;
+    private static final String COUNTRY_HEALTHCHECK_PATH = "/country-healthcheck";
+
     public static void main(final String[] args) throws Exception {
         if (args == null || args.length == 0) {
             String configFile = System.getenv("CONFIG_FILE");
@@ -77,13 +91,28 @@ public class MetatronApplication extends Application<MetatronConfiguration> {
         EidasConfig countriesConfig = ConfigLoaderUtil.loadConfig(configuration.getCountriesConfig());
         MetadataResolverFactory metadataResolverFactory = new MetadataResolverFactory();
         CredentialResolverFactory credentialResolverFactory = new CredentialResolverFactory();
-        MetadataResolverService resolverService = new MetadataResolverService(countriesConfig, metadataResolverFactory, credentialResolverFactory);
+        ExecutorService resolverInitialisationExecutor = environment.lifecycle()
+                .executorService("metadata-resolver-init-%d")
+                .minThreads(configuration.getResolverInitialisationThreads())
+                .maxThreads(configuration.getResolverInitialisationThreads())
+                .build();
+        MetadataBackingStore metadataBackingStore = configuration.getMetadataCacheDirectory() == null
+                ? MetadataBackingStore.disabled()
+                : new MetadataBackingStore(Paths.get(configuration.getMetadataCacheDirectory()));
+        CountryMetadataHealthMetrics healthMetrics = new CountryMetadataHealthMetrics(countriesConfig);
+        MetadataFetchListener fetchListener = MetadataFetchListener.all(new MetadataFetchMetrics(countriesConfig), healthMetrics);
+        MetadataClientFactory metadataClientFactory = new MetadataClientFactory(configuration.getMetadataClient(), fetchListener, metadataBackingStore);
+        environment.lifecycle().manage(metadataClientFactory);
+        MetadataResolverService resolverService = new MetadataResolverService(countriesConfig, metadataResolverFactory, credentialResolverFactory, metadataClientFactory, metadataBackingStore, healthMetrics, resolverInitialisationExecutor);
 
         final MetatronHealthCheck healthCheck = new MetatronHealthCheck();
         environment.healthChecks().register("Metatron", healthCheck);
-        scheduleMetadataHealthChecker(environment, resolverService);
+        registerCountryHealthChecks(environment, resolverService);
+
+        MetadataChangeLog changeLog = new MetadataChangeLog(MAX_RETAINED_VERSIONS);
+        scheduleMetadataChangeMonitor(environment, configuration, resolverService, changeLog);
 
-        environment.jersey().register(new MetatronResource(resolverService));
+        environment.jersey().register(new MetatronResource(resolverService, changeLog));
         environment.jersey().register(MetatronClientExceptionMapper.class);
         environment.jersey().register(MetatronServerExceptionMapper.class);
 
@@ -94,16 +123,25 @@ public class MetatronApplication extends Application<MetatronConfiguration> {
 
     }
 
-    private void scheduleMetadataHealthChecker(Environment environment, MetadataResolverService resolverService) {
+    private void registerCountryHealthChecks(Environment environment, MetadataResolverService resolverService) {
+        // Kept off the liveness /healthcheck: restarting metatron does not fix an unavailable country
+        HealthCheckRegistry countryHealthChecks = new HealthCheckRegistry();
+        resolverService.getResolvers().forEach(entityId ->
+                countryHealthChecks.register("country-metadata-" + entityId, new CountryMetadataHealthCheck(resolverService, entityId)));
+        environment.admin()
+                .addServlet("country-healthcheck", new HealthCheckServlet(countryHealthChecks))
+                .addMapping(COUNTRY_HEALTHCHECK_PATH);
+    }
+
+    private void scheduleMetadataChangeMonitor(Environment environment, MetatronConfiguration configuration, MetadataResolverService resolverService, MetadataChangeLog changeLog) {
         ScheduledExecutorService scheduledExecutorService = environment
                 .lifecycle()
-                .scheduledExecutorService("CountryMetadataHealthMetrics")
+                .scheduledExecutorService("MetadataChangeMonitor")
                 .build();
-        Runnable metrics = new CountryMetadataHealthMetrics(resolverService);
-        scheduledExecutorService.scheduleWithFixedDelay(metrics, 2, 5, TimeUnit.MINUTES);
+        Runnable monitor = new MetadataChangeMonitor(resolverService, changeLog);
+        scheduledExecutorService.scheduleWithFixedDelay(monitor, 0, configuration.getChangeCheckIntervalSeconds(), TimeUnit.SECONDS);
     }
 
-
     private void registerInjections(Environment environment) {
         environment.jersey().register(new AbstractBinder() {
             @Override
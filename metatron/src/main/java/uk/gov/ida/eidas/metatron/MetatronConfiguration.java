@@ -1,16 +1,53 @@
 package uk.gov.ida.eidas.metatron;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import engineering.reliability.gds.metrics.config.PrometheusConfiguration;
 import io.dropwizard.Configuration;
 
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
 public class MetatronConfiguration extends Configuration implements PrometheusConfiguration {
 
     private String countriesConfig;
 
+    @Min(1)
+    @JsonProperty
+    private long changeCheckIntervalSeconds = 10;
+
+    @Min(1)
+    @JsonProperty
+    private int resolverInitialisationThreads = 4;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private MetadataClientConfiguration metadataClient = new MetadataClientConfiguration();
+
+    @JsonProperty
+    private String metadataCacheDirectory;
+
     public String getCountriesConfig() {
         return countriesConfig;
     }
 
+    public long getChangeCheckIntervalSeconds() {
+        return changeCheckIntervalSeconds;
+    }
+
+    public int getResolverInitialisationThreads() {
+        return resolverInitialisationThreads;
+    }
+
+    public MetadataClientConfiguration getMetadataClient() {
+        return metadataClient;
+    }
+
+    public String getMetadataCacheDirectory() {
+        return metadataCacheDirectory;
+    }
+
     @Override
     public boolean isPrometheusEnabled() {
         return true;
@@ -0,0 +1,41 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.metadata.resolver.filter.MetadataFilter;
+import uk.gov.ida.notification.saml.SamlObjectMarshaller;
+
+/**
+ * Placed last in a country's filter chain, so it only sees metadata that the signature and
+ * certificate filters have accepted. The accepted document is written to the
+ * {@link MetadataBackingStore} and the {@link MetadataAcceptanceListener} is told about it.
+ *
+ * The bytes are taken from the document's own DOM, which still holds the signed content as
+ * parsed, rather than from whichever response was fetched last.
+ */
+class AcceptedMetadataFilter implements MetadataFilter {
+
+    private static final SamlObjectMarshaller MARSHALLER = new SamlObjectMarshaller();
+
+    private final EidasCountryConfig country;
+    private final MetadataBackingStore backingStore;
+    private final MetadataAcceptanceListener acceptanceListener;
+
+    AcceptedMetadataFilter(EidasCountryConfig country, MetadataBackingStore backingStore, MetadataAcceptanceListener acceptanceListener) {
+        this.country = country;
+        this.backingStore = backingStore;
+        this.acceptanceListener = acceptanceListener;
+    }
+
+    @Override
+    public XMLObject filter(XMLObject metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        if (backingStore.isEnabled() && metadata instanceof SAMLObject) {
+            backingStore.persistAccepted(country.getConnectorMetadata(), MARSHALLER.transformToBytes((SAMLObject) metadata));
+        }
+        acceptanceListener.metadataAccepted(country.getEntityId(), metadata);
+        return metadata;
+    }
+}
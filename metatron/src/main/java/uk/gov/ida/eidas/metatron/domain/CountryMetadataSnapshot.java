@@ -0,0 +1,78 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import org.joda.time.DateTime;
+import uk.gov.ida.notification.contracts.metadata.AssertionConsumerService;
+import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * An immutable CountryMetadataResponse built from one version of a country's metadata,
+ * with a strong entity tag derived from its content.
+ */
+public class CountryMetadataSnapshot {
+
+    private final CountryMetadataResponse response;
+    private final DateTime resolverLastUpdate;
+    private final String entityTag;
+
+    CountryMetadataSnapshot(CountryMetadataResponse response, DateTime resolverLastUpdate) {
+        this.response = response;
+        this.resolverLastUpdate = resolverLastUpdate;
+        this.entityTag = digest(contentOf(response));
+    }
+
+    public CountryMetadataResponse getResponse() {
+        return response;
+    }
+
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    public Optional<Date> getLastModified() {
+        return Optional.ofNullable(resolverLastUpdate).map(DateTime::toDate);
+    }
+
+    boolean isFor(DateTime lastUpdate) {
+        return resolverLastUpdate != null && resolverLastUpdate.equals(lastUpdate);
+    }
+
+    public static String combinedEntityTag(Collection<CountryMetadataSnapshot> snapshots) {
+        StringBuilder content = new StringBuilder();
+        snapshots.forEach(snapshot -> content.append(snapshot.getEntityTag()).append('\n'));
+        return digest(content.toString());
+    }
+
+    private static String contentOf(CountryMetadataResponse response) {
+        StringBuilder content = new StringBuilder()
+                .append(response.getEntityId()).append('\n')
+                .append(response.getCountryCode()).append('\n')
+                .append(response.getSamlSigningCertX509()).append('\n')
+                .append(response.getSamlEncryptionCertX509()).append('\n');
+        for (AssertionConsumerService acs : response.getAssertionConsumerServices()) {
+            content.append(acs.getLocation()).append(' ')
+                    .append(acs.getIndex()).append(' ')
+                    .append(acs.isDefaultService()).append('\n');
+        }
+        return content.toString();
+    }
+
+    static String digest(String content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
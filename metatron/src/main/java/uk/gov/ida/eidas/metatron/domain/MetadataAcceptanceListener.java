@@ -0,0 +1,14 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import org.opensaml.core.xml.XMLObject;
+
+import java.net.URI;
+
+/**
+ * Told about each metadata document a country's resolver accepts, once it has passed every
+ * other filter and just before the resolver starts serving it.
+ */
+public interface MetadataAcceptanceListener {
+
+    void metadataAccepted(URI entityId, XMLObject metadata);
+}
@@ -0,0 +1,111 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Keeps the last metadata document each country's resolver accepted on disk, so that after a
+ * restart the first fetch of each document can be answered from disk instead of the network.
+ *
+ * The copy still goes through the resolver's signature, expiry and validUntil checks when it
+ * is loaded, so a stale or tampered file is rejected just as a bad download would be.
+ */
+public class MetadataBackingStore {
+
+    private final Path directory;
+    private final Map<URI, byte[]> persistedDocuments = new ConcurrentHashMap<>();
+    private final Set<URI> startupCopiesServed = ConcurrentHashMap.newKeySet();
+
+    public MetadataBackingStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    private MetadataBackingStore() {
+        this.directory = null;
+    }
+
+    public static MetadataBackingStore disabled() {
+        return new MetadataBackingStore();
+    }
+
+    boolean isEnabled() {
+        return directory != null;
+    }
+
+    public boolean hasStartupCopy(URI metadataUri) {
+        return directory != null
+                && !startupCopiesServed.contains(metadataUri)
+                && Files.isRegularFile(fileFor(metadataUri));
+    }
+
+    /**
+     * The persisted document for this URI, the first time it is asked for only.
+     */
+    Optional<byte[]> takeStartupCopy(URI metadataUri) {
+        if (directory == null || !startupCopiesServed.add(metadataUri)) {
+            return Optional.empty();
+        }
+        Path file = fileFor(metadataUri);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            byte[] document = Files.readAllBytes(file);
+            persistedDocuments.put(metadataUri, document);
+            return Optional.of(document);
+        } catch (IOException e) {
+            ProxyNodeLogger.logException(e, Level.WARNING, String.format("Unable to read cached metadata for %s", metadataUri));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Persists a document that this URI's resolver has just accepted. The file is replaced
+     * atomically so a crash mid-write never leaves a partial document.
+     */
+    void persistAccepted(URI metadataUri, byte[] document) {
+        if (directory == null || Arrays.equals(document, persistedDocuments.get(metadataUri))) {
+            return;
+        }
+        Path file = fileFor(metadataUri);
+        try {
+            Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporaryFile, document);
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+            persistedDocuments.put(metadataUri, document);
+        } catch (IOException e) {
+            ProxyNodeLogger.logException(e, Level.WARNING, String.format("Unable to cache metadata for %s", metadataUri));
+        }
+    }
+
+    private Path fileFor(URI metadataUri) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(metadataUri.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 4);
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".xml").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
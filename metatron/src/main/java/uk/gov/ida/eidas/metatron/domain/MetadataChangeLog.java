@@ -0,0 +1,129 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import uk.gov.ida.notification.contracts.metadata.MetadataChanges;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * The current version of every country's metadata, and a bounded number of the versions before
+ * it, that long-polling clients can wait on.
+ *
+ * A version is a digest of the entity tags of every country that currently resolves, so every
+ * replica holding the same metadata reports the same version and clients may poll any of them.
+ * Given a version it has retained, a replica lists exactly the countries that differ from it;
+ * callers with any other version are told the change set is incomplete.
+ */
+public class MetadataChangeLog {
+
+    /**
+     * The version in which no country resolves, which every instance starts from.
+     */
+    public static final String EMPTY_VERSION = versionOf(Map.of());
+
+    private final int maxRetainedVersions;
+    private final Map<String, Map<String, String>> retainedVersions = new LinkedHashMap<>();
+    private final List<Waiter> waiters = new ArrayList<>();
+    private String currentVersion;
+    private Map<String, String> currentEntityTags;
+
+    public MetadataChangeLog(int maxRetainedVersions) {
+        this.maxRetainedVersions = maxRetainedVersions;
+        this.currentEntityTags = Map.of();
+        this.currentVersion = EMPTY_VERSION;
+        retainedVersions.put(currentVersion, currentEntityTags);
+    }
+
+    /**
+     * Records the entity tags of every country that currently resolves, waking any waiters if
+     * that is a new version.
+     */
+    public void update(Map<String, String> entityTags) {
+        List<Waiter> ready;
+        synchronized (this) {
+            Map<String, String> sortedEntityTags = new TreeMap<>(entityTags);
+            String version = versionOf(sortedEntityTags);
+            if (version.equals(currentVersion)) {
+                return;
+            }
+            currentVersion = version;
+            currentEntityTags = sortedEntityTags;
+            retainedVersions.remove(version);
+            retainedVersions.put(version, sortedEntityTags);
+            Iterator<String> oldest = retainedVersions.keySet().iterator();
+            while (retainedVersions.size() > maxRetainedVersions) {
+                oldest.next();
+                oldest.remove();
+            }
+            ready = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        // Waiters are completed outside the lock as resuming a request may write the response
+        ready.forEach(waiter -> waiter.callback.accept(changesSince(waiter.version).orElseThrow()));
+    }
+
+    public synchronized Optional<MetadataChanges> changesSince(String callerVersion) {
+        if (currentVersion.equals(callerVersion)) {
+            return Optional.empty();
+        }
+        Map<String, String> callerEntityTags = retainedVersions.get(callerVersion);
+        if (callerEntityTags == null) {
+            return Optional.of(new MetadataChanges(currentVersion, false, List.of()));
+        }
+        Set<String> changed = new TreeSet<>(callerEntityTags.keySet());
+        changed.addAll(currentEntityTags.keySet());
+        changed.removeIf(entityId -> Objects.equals(callerEntityTags.get(entityId), currentEntityTags.get(entityId)));
+        return Optional.of(new MetadataChanges(currentVersion, true, List.copyOf(changed)));
+    }
+
+    /**
+     * Calls back as soon as the current version differs from {@code callerVersion}: immediately
+     * if it already does, otherwise on the next update. Returns a handle to cancel the wait on
+     * timeout.
+     */
+    public Runnable awaitChangesSince(String callerVersion, Consumer<MetadataChanges> callback) {
+        Waiter waiter = new Waiter(callerVersion, callback);
+        Optional<MetadataChanges> available;
+        synchronized (this) {
+            available = changesSince(callerVersion);
+            if (available.isEmpty()) {
+                waiters.add(waiter);
+            }
+        }
+        available.ifPresent(callback);
+        return () -> {
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+        };
+    }
+
+    public MetadataChanges noChangesSince(String callerVersion) {
+        return new MetadataChanges(callerVersion, true, List.of());
+    }
+
+    private static String versionOf(Map<String, String> sortedEntityTags) {
+        StringBuilder content = new StringBuilder();
+        sortedEntityTags.forEach((entityId, entityTag) -> content.append(entityId).append(' ').append(entityTag).append('\n'));
+        return CountryMetadataSnapshot.digest(content.toString());
+    }
+
+    private static class Waiter {
+        private final String version;
+        private final Consumer<MetadataChanges> callback;
+
+        private Waiter(String version, Consumer<MetadataChanges> callback) {
+            this.version = version;
+            this.callback = callback;
+        }
+    }
+}
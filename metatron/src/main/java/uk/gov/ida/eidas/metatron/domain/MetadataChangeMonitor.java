@@ -0,0 +1,37 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Periodically collects the entity tag of every country that currently resolves and records
+ * them in the change log, which publishes a new version whenever any of them differs, including
+ * when a country starts or stops resolving.
+ */
+public class MetadataChangeMonitor implements Runnable {
+
+    private final MetadataResolverService resolverService;
+    private final MetadataChangeLog changeLog;
+
+    public MetadataChangeMonitor(MetadataResolverService resolverService, MetadataChangeLog changeLog) {
+        this.resolverService = resolverService;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public void run() {
+        Map<String, String> entityTags = new HashMap<>();
+        for (URI entityId : resolverService.getResolvers()) {
+            if (!resolverService.isInitialised(entityId)) {
+                continue;
+            }
+            try {
+                entityTags.put(entityId.toString(), resolverService.getCountryMetadataSnapshot(entityId).getEntityTag());
+            } catch (RuntimeException e) {
+                // Left out, so the country shows as changed when it stops or starts resolving
+            }
+        }
+        changeLog.update(entityTags);
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import uk.gov.ida.eidas.metatron.MetadataClientConfiguration;
+
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.client.Client;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out one pooled, keep-alive Jersey client per distinct TLS truststore, so countries
+ * that trust the same certificates share connections and TLS sessions rather than each
+ * country having a client of its own.
+ */
+public class MetadataClientFactory implements Managed {
+
+    private static final String DEFAULT_TRUSTSTORE = "default";
+
+    private final MetadataClientConfiguration configuration;
+    private final MetadataFetchListener fetchListener;
+    private final MetadataBackingStore backingStore;
+    private final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+
+    public MetadataClientFactory(MetadataClientConfiguration configuration, MetadataFetchListener fetchListener, MetadataBackingStore backingStore) {
+        this.configuration = configuration;
+        this.fetchListener = fetchListener;
+        this.backingStore = backingStore;
+    }
+
+    public Client getClient(Optional<KeyStore> tlsTruststore) {
+        String key = tlsTruststore.map(MetadataClientFactory::fingerprint).orElse(DEFAULT_TRUSTSTORE);
+        return clients.computeIfAbsent(key, k -> createClient(tlsTruststore)).client;
+    }
+
+    /**
+     * The longest a single fetch can take to fail by timing out.
+     */
+    public long getFetchTimeoutMillis() {
+        return (long) configuration.getConnectTimeoutMillis() + configuration.getReadTimeoutMillis();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        clients.values().forEach(pooledClient -> {
+            pooledClient.client.close();
+            pooledClient.connectionManager.shutdown();
+        });
+        clients.clear();
+    }
+
+    private PooledClient createClient(Optional<KeyStore> tlsTruststore) {
+        SSLConnectionSocketFactory sslSocketFactory = tlsTruststore
+                .map(trustStore -> new SSLConnectionSocketFactory(sslContext(trustStore)))
+                .orElseGet(SSLConnectionSocketFactory::getSocketFactory);
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                socketFactories, null, null, null, configuration.getConnectionTimeToLiveSeconds(), TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(configuration.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.connectorProvider(new MetadataFetchConnectorProvider(new ApacheConnectorProvider(), fetchListener));
+        clientConfig.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        clientConfig.property(ClientProperties.CONNECT_TIMEOUT, configuration.getConnectTimeoutMillis());
+        clientConfig.property(ClientProperties.READ_TIMEOUT, configuration.getReadTimeoutMillis());
+        clientConfig.register(new MetadataFetchFilter(fetchListener, backingStore));
+
+        return new PooledClient(JerseyClientBuilder.createClient(clientConfig), connectionManager);
+    }
+
+    private static SSLContext sslContext(KeyStore trustStore) {
+        try {
+            return SSLContexts.custom().loadTrustMaterial(trustStore, null).build();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create SSL context from TLS truststore", e);
+        }
+    }
+
+    private static String fingerprint(KeyStore trustStore) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            List<String> aliases = Collections.list(trustStore.aliases());
+            Collections.sort(aliases);
+            for (String alias : aliases) {
+                Certificate certificate = trustStore.getCertificate(alias);
+                if (certificate != null) {
+                    digest.update(certificate.getEncoded());
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to fingerprint TLS truststore", e);
+        }
+    }
+
+    private static class PooledClient {
+        private final Client client;
+        private final PoolingHttpClientConnectionManager connectionManager;
+
+        private PooledClient(Client client, PoolingHttpClientConnectionManager connectionManager) {
+            this.client = client;
+            this.connectionManager = connectionManager;
+        }
+    }
+}
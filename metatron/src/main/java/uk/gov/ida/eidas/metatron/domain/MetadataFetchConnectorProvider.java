@@ -0,0 +1,81 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import java.util.concurrent.Future;
+
+/**
+ * Reports metadata fetches that never get a response, such as timeouts and refused
+ * connections, to the {@link MetadataFetchListener}. Jersey does not run response filters
+ * for these, so {@link MetadataFetchFilter} cannot see them.
+ */
+class MetadataFetchConnectorProvider implements ConnectorProvider {
+
+    private final ConnectorProvider delegate;
+    private final MetadataFetchListener fetchListener;
+
+    MetadataFetchConnectorProvider(ConnectorProvider delegate, MetadataFetchListener fetchListener) {
+        this.delegate = delegate;
+        this.fetchListener = fetchListener;
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new ReportingConnector(delegate.getConnector(client, runtimeConfig));
+    }
+
+    private class ReportingConnector implements Connector {
+        private final Connector connector;
+
+        private ReportingConnector(Connector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            long started = System.nanoTime();
+            try {
+                return connector.apply(request);
+            } catch (ProcessingException e) {
+                fetchListener.metadataFetchFailed(request.getUri(), e, System.nanoTime() - started);
+                throw e;
+            }
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            long started = System.nanoTime();
+            return connector.apply(request, new AsyncConnectorCallback() {
+                @Override
+                public void response(ClientResponse response) {
+                    callback.response(response);
+                }
+
+                @Override
+                public void failure(Throwable failure) {
+                    if (failure instanceof ProcessingException) {
+                        fetchListener.metadataFetchFailed(request.getUri(), (ProcessingException) failure, System.nanoTime() - started);
+                    }
+                    callback.failure(failure);
+                }
+            });
+        }
+
+        @Override
+        public String getName() {
+            return connector.getName();
+        }
+
+        @Override
+        public void close() {
+            connector.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revalidates metadata fetches with If-None-Match / If-Modified-Since and, on a 304,
+ * replays the last body so resolvers see an ordinary 200 without downloading it again.
+ * Each fetch that gets a response is reported to the {@link MetadataFetchListener}.
+ *
+ * The first fetch of a document after start-up is answered from the
+ * {@link MetadataBackingStore} when it holds a copy.
+ */
+class MetadataFetchFilter implements ClientRequestFilter, ClientResponseFilter {
+
+    private static final String FETCH_STARTED_PROPERTY = MetadataFetchFilter.class.getName() + ".started";
+    private static final String FROM_BACKING_STORE_PROPERTY = MetadataFetchFilter.class.getName() + ".fromBackingStore";
+
+    private final MetadataFetchListener fetchListener;
+    private final MetadataBackingStore backingStore;
+    private final Map<URI, CachedResponse> cachedResponses = new ConcurrentHashMap<>();
+
+    MetadataFetchFilter(MetadataFetchListener fetchListener, MetadataBackingStore backingStore) {
+        this.fetchListener = fetchListener;
+        this.backingStore = backingStore;
+    }
+
+    @Override
+    public void filter(ClientRequestContext request) {
+        if (!HttpMethod.GET.equals(request.getMethod())) {
+            return;
+        }
+        Optional<byte[]> startupCopy = backingStore.takeStartupCopy(request.getUri());
+        if (startupCopy.isPresent()) {
+            request.setProperty(FROM_BACKING_STORE_PROPERTY, true);
+            request.abortWith(Response.ok(startupCopy.get()).build());
+            return;
+        }
+        request.setProperty(FETCH_STARTED_PROPERTY, System.nanoTime());
+        CachedResponse cached = cachedResponses.get(request.getUri());
+        if (cached == null) {
+            return;
+        }
+        if (cached.entityTag != null) {
+            request.getHeaders().putSingle(HttpHeaders.IF_NONE_MATCH, cached.entityTag);
+        }
+        if (cached.lastModified != null) {
+            request.getHeaders().putSingle(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified);
+        }
+    }
+
+    @Override
+    public void filter(ClientRequestContext request, ClientResponseContext response) throws IOException {
+        if (!HttpMethod.GET.equals(request.getMethod()) || request.getProperty(FROM_BACKING_STORE_PROPERTY) != null) {
+            return;
+        }
+        URI uri = request.getUri();
+        int status = response.getStatus();
+        CachedResponse cached = cachedResponses.get(uri);
+        long documentSizeBytes = 0;
+
+        if (status == Response.Status.NOT_MODIFIED.getStatusCode() && cached != null) {
+            closeQuietly(response.getEntityStream());
+            response.setStatus(Response.Status.OK.getStatusCode());
+            if (cached.contentType != null) {
+                response.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, cached.contentType);
+            }
+            response.setEntityStream(new ByteArrayInputStream(cached.body));
+            documentSizeBytes = cached.body.length;
+        } else if (status == Response.Status.OK.getStatusCode() && response.hasEntity()) {
+            byte[] body;
+            try (InputStream entityStream = response.getEntityStream()) {
+                body = entityStream.readAllBytes();
+            }
+            response.setEntityStream(new ByteArrayInputStream(body));
+            documentSizeBytes = body.length;
+
+            String entityTag = response.getHeaderString(HttpHeaders.ETAG);
+            String lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            if (entityTag == null && lastModified == null) {
+                cachedResponses.remove(uri);
+            } else {
+                cachedResponses.put(uri, new CachedResponse(body, entityTag, lastModified, response.getHeaderString(HttpHeaders.CONTENT_TYPE)));
+            }
+        }
+
+        Object started = request.getProperty(FETCH_STARTED_PROPERTY);
+        long durationNanos = started instanceof Long ? System.nanoTime() - (Long) started : 0;
+        fetchListener.metadataFetched(uri, status, documentSizeBytes, durationNanos);
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // The 304 has no body worth reporting a failure for
+        }
+    }
+
+    private static class CachedResponse {
+        private final byte[] body;
+        private final String entityTag;
+        private final String lastModified;
+        private final String contentType;
+
+        private CachedResponse(byte[] body, String entityTag, String lastModified, String contentType) {
+            this.body = body;
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+    }
+}
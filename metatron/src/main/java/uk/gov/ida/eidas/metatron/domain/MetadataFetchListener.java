@@ -0,0 +1,34 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import javax.ws.rs.ProcessingException;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Told about every metadata fetch: those that get a response, including revalidations
+ * answered with 304 Not Modified, and those that time out or fail to connect.
+ */
+public interface MetadataFetchListener {
+
+    void metadataFetched(URI metadataUri, int status, long documentSizeBytes, long durationNanos);
+
+    void metadataFetchFailed(URI metadataUri, ProcessingException cause, long durationNanos);
+
+    /**
+     * A listener that passes every fetch on to each of the given listeners in turn.
+     */
+    static MetadataFetchListener all(MetadataFetchListener... listeners) {
+        List<MetadataFetchListener> all = List.of(listeners);
+        return new MetadataFetchListener() {
+            @Override
+            public void metadataFetched(URI metadataUri, int status, long documentSizeBytes, long durationNanos) {
+                all.forEach(listener -> listener.metadataFetched(metadataUri, status, documentSizeBytes, durationNanos));
+            }
+
+            @Override
+            public void metadataFetchFailed(URI metadataUri, ProcessingException cause, long durationNanos) {
+                all.forEach(listener -> listener.metadataFetchFailed(metadataUri, cause, durationNanos));
+            }
+        };
+    }
+}
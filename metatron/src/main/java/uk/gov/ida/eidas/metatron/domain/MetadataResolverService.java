@@ -3,13 +3,12 @@ package uk.gov.ida.eidas.metatron.domain;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
-import org.glassfish.jersey.client.ClientConfig;
-import org.glassfish.jersey.client.ClientProperties;
-import org.glassfish.jersey.client.JerseyClientBuilder;
 import org.opensaml.core.criterion.EntityIdCriterion;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.criterion.EntityRoleCriterion;
+import org.joda.time.DateTime;
 import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
 import org.opensaml.saml.metadata.resolver.filter.MetadataFilter;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
@@ -22,20 +21,28 @@ import uk.gov.ida.eidas.metatron.exceptions.MetatronClientException;
 import uk.gov.ida.eidas.metatron.exceptions.MetatronServerException;
 import uk.gov.ida.notification.contracts.metadata.AssertionConsumerService;
 import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
+import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
 import uk.gov.ida.saml.metadata.ExpiredCertificateMetadataFilter;
 import uk.gov.ida.saml.metadata.PKIXSignatureValidationFilterProvider;
 import uk.gov.ida.saml.metadata.factories.CredentialResolverFactory;
 import uk.gov.ida.saml.metadata.factories.MetadataResolverFactory;
 
-import javax.ws.rs.client.Client;
 import java.net.URI;
 import java.security.cert.CertificateEncodingException;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class MetadataResolverService {
@@ -47,24 +54,73 @@ public class MetadataResolverService {
     private final ExpiredCertificateMetadataFilter expiredCertificateMetadataFilter;
     private final MetadataResolverFactory metadataResolverFactory;
     private final CredentialResolverFactory credentialResolverFactory;
+    private final MetadataClientFactory metadataClientFactory;
+    private final MetadataBackingStore metadataBackingStore;
+    private final MetadataAcceptanceListener acceptanceListener;
 
     public MetadataResolverService(
             EidasConfig countriesConfig,
             MetadataResolverFactory metadataResolverFactory,
-            CredentialResolverFactory credentialResolverFactory) {
+            CredentialResolverFactory credentialResolverFactory,
+            MetadataClientFactory metadataClientFactory,
+            MetadataBackingStore metadataBackingStore,
+            MetadataAcceptanceListener acceptanceListener,
+            Executor initialisationExecutor) {
         this.metadataResolverFactory = metadataResolverFactory;
         this.credentialResolverFactory = credentialResolverFactory;
+        this.metadataClientFactory = metadataClientFactory;
+        this.metadataBackingStore = metadataBackingStore;
+        this.acceptanceListener = acceptanceListener;
         this.expiredCertificateMetadataFilter = new ExpiredCertificateMetadataFilter();
-        this.countryConfigMap = countriesConfig.getCountries().parallelStream()
-                .collect(Collectors.toMap(EidasCountryConfig::getEntityId, this::createMetadataResolver));
+        this.countryConfigMap = countriesConfig.getCountries().stream()
+                .collect(Collectors.toMap(
+                        EidasCountryConfig::getEntityId,
+                        country -> new CountryMetadata(country, initialiseMetadataResolver(country, initialisationExecutor))));
     }
 
     public Set<URI> getResolvers() {
         return Collections.unmodifiableSet(countryConfigMap.keySet());
     }
 
+    /**
+     * Whether the country's resolver has finished its initial fetch. Countries are initialised
+     * in the background so that one slow country does not hold up the others.
+     */
+    public boolean isInitialised(URI entityId) {
+        CountryMetadata countryMetadata = countryConfigMap.get(entityId);
+        return countryMetadata != null && countryMetadata.isInitialised();
+    }
+
     public CountryMetadataResponse getCountryMetadataResponse(URI entityId) {
-        final CountryMetadata countryMetadata = getEnabledCountryConfigurationData(entityId);
+        return getCountryMetadataSnapshot(entityId).getResponse();
+    }
+
+    public CountryMetadataSnapshot getCountryMetadataSnapshot(URI entityId) {
+        return getEnabledCountryConfigurationData(entityId).getCurrentSnapshot();
+    }
+
+    /**
+     * Snapshots of every enabled country whose metadata currently resolves, ordered by entityId.
+     * Countries that fail to resolve or are still initialising are left out rather than failing
+     * or delaying the whole set.
+     */
+    public List<CountryMetadataSnapshot> getAllCountryMetadataSnapshots() {
+        List<CountryMetadataSnapshot> snapshots = new ArrayList<>();
+        countryConfigMap.values().stream()
+                .filter(countryMetadata -> countryMetadata.getCountryConfig().isEnabled())
+                .filter(CountryMetadata::isInitialised)
+                .sorted(Comparator.comparing(countryMetadata -> countryMetadata.getCountryConfig().getEntityId()))
+                .forEach(countryMetadata -> {
+                    try {
+                        snapshots.add(countryMetadata.getCurrentSnapshot());
+                    } catch (MetatronServerException e) {
+                        ProxyNodeLogger.logException(e, Level.WARNING, "Leaving unresolvable country out of bulk metadata");
+                    }
+                });
+        return snapshots;
+    }
+
+    private CountryMetadataResponse buildCountryMetadataResponse(CountryMetadata countryMetadata) {
         final List<AssertionConsumerService> assertionsConsumerServices = getAssertionConsumerServices(countryMetadata);
         final String signingX509 = getCertificateAsX509(countryMetadata, UsageType.SIGNING);
         final String encryptionX509 = getCertificateAsX509(countryMetadata, UsageType.ENCRYPTION);
@@ -76,30 +132,62 @@ public class MetadataResolverService {
                 countryMetadata.getCountryConfig().getCountryCode());
     }
 
-    private Client getClient(EidasCountryConfig country) {
-        ClientConfig configuration = new ClientConfig();
-        configuration.property(ClientProperties.CONNECT_TIMEOUT, 5_000);
-        configuration.property(ClientProperties.READ_TIMEOUT, 5_000);
-        return country.getTlsTruststore()
-                .map(ts -> JerseyClientBuilder.newBuilder().trustStore(ts).withConfig(configuration).build())
-                .orElse(JerseyClientBuilder.newClient(configuration));
-    }
-
     private List<MetadataFilter> getFilters(EidasCountryConfig country) {
         List<MetadataFilter> filters = new ArrayList<>();
         filters.add(new PKIXSignatureValidationFilterProvider(country.getMetadataTruststore()).get());
         filters.add(expiredCertificateMetadataFilter);
+        filters.add(new AcceptedMetadataFilter(country, metadataBackingStore, acceptanceListener));
         return filters;
     }
 
-    private CountryMetadata createMetadataResolver(EidasCountryConfig country) {
-        MetadataResolver resolver = this.metadataResolverFactory.create(
-                getClient(country),
+    /**
+     * When a cached copy of the country's metadata is on disk the resolver starts from it and is
+     * then refreshed from source in the background. If the cached copy cannot be loaded the
+     * resolver is created again, this time fetching from source.
+     */
+    private CompletableFuture<MetadataResolver> initialiseMetadataResolver(EidasCountryConfig country, Executor initialisationExecutor) {
+        boolean loadingFromBackingStore = metadataBackingStore.hasStartupCopy(country.getConnectorMetadata());
+        CompletableFuture<MetadataResolver> initialResolver = CompletableFuture.supplyAsync(() -> createMetadataResolver(country), initialisationExecutor);
+        CompletableFuture<MetadataResolver> metadataResolver = initialResolver;
+        if (loadingFromBackingStore) {
+            initialResolver.thenAcceptAsync(resolver -> refreshFromSource(country, resolver), initialisationExecutor);
+            metadataResolver = initialResolver
+                    .handle((resolver, e) -> e == null ? initialResolver : createFromSourceAfterCacheFailed(country, e, initialisationExecutor))
+                    .thenCompose(Function.identity());
+        }
+        metadataResolver.whenComplete((resolver, e) -> {
+            if (e != null) {
+                ProxyNodeLogger.logException(e, String.format("Failed to initialise metadata resolver for entityId %s", country.getEntityId()));
+            } else {
+                ProxyNodeLogger.info(String.format("Initialised metadata resolver for entityId %s", country.getEntityId()));
+            }
+        });
+        return metadataResolver;
+    }
+
+    private CompletableFuture<MetadataResolver> createFromSourceAfterCacheFailed(EidasCountryConfig country, Throwable cause, Executor initialisationExecutor) {
+        ProxyNodeLogger.logException(cause, Level.WARNING, String.format("Unable to initialise metadata resolver for entityId %s from cached metadata, fetching from source", country.getEntityId()));
+        return CompletableFuture.supplyAsync(() -> createMetadataResolver(country), initialisationExecutor);
+    }
+
+    private void refreshFromSource(EidasCountryConfig country, MetadataResolver metadataResolver) {
+        if (!(metadataResolver instanceof RefreshableMetadataResolver)) {
+            return;
+        }
+        try {
+            ((RefreshableMetadataResolver) metadataResolver).refresh();
+        } catch (ResolverException e) {
+            ProxyNodeLogger.logException(e, Level.WARNING, String.format("Unable to refresh cached metadata for entityId %s from source", country.getEntityId()));
+        }
+    }
+
+    private MetadataResolver createMetadataResolver(EidasCountryConfig country) {
+        return this.metadataResolverFactory.create(
+                metadataClientFactory.getClient(country.getTlsTruststore()),
                 country.getConnectorMetadata(),
                 getFilters(country),
                 MIN_REFRESH_DELAY_MS,
                 MAX_REFRESH_DELAY_MS);
-        return new CountryMetadata(country, resolver);
     }
 
     private CountryMetadata getEnabledCountryConfigurationData(URI entityId) {
@@ -166,14 +254,22 @@ public class MetadataResolverService {
 
         return assertionConsumerServices.stream()
                 .map(s -> new AssertionConsumerService(URI.create(s.getLocation()), s.getIndex(), s.isDefault()))
-                .collect(Collectors.toList());
+                .collect(Collectors.toUnmodifiableList());
     }
 
+    /**
+     * The response for a country is built once per version of its metadata and reused until
+     * the resolver reports a newer update. Failures are not cached.
+     *
+     * Requests that arrive while the resolver is still initialising wait for at most one
+     * fetch's worth of timeouts before failing.
+     */
     private class CountryMetadata {
         private final EidasCountryConfig countryConfig;
-        private final MetadataResolver metadataResolver;
+        private final CompletableFuture<MetadataResolver> metadataResolver;
+        private volatile CountryMetadataSnapshot snapshot;
 
-        public CountryMetadata(EidasCountryConfig countryConfig, MetadataResolver metadataResolver) {
+        public CountryMetadata(EidasCountryConfig countryConfig, CompletableFuture<MetadataResolver> metadataResolver) {
             this.countryConfig = countryConfig;
             this.metadataResolver = metadataResolver;
         }
@@ -182,8 +278,48 @@ public class MetadataResolverService {
             return countryConfig;
         }
 
+        public boolean isInitialised() {
+            return metadataResolver.isDone() && !metadataResolver.isCompletedExceptionally();
+        }
+
         public MetadataResolver getMetadataResolver() {
-            return metadataResolver;
+            URI entityId = countryConfig.getEntityId();
+            try {
+                return metadataResolver.get(metadataClientFactory.getFetchTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new MetatronServerException(String.format("Metadata resolver for entityId %s is still initialising", entityId), e);
+            } catch (ExecutionException e) {
+                throw new MetatronServerException(String.format("Metadata resolver for entityId %s failed to initialise", entityId), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MetatronServerException(String.format("Interrupted waiting for metadata resolver for entityId %s", entityId), e);
+            }
+        }
+
+        public CountryMetadataSnapshot getCurrentSnapshot() {
+            DateTime lastUpdate = getLastUpdate();
+            CountryMetadataSnapshot current = snapshot;
+            if (current != null && current.isFor(lastUpdate)) {
+                return current;
+            }
+            synchronized (this) {
+                current = snapshot;
+                if (current != null && current.isFor(lastUpdate)) {
+                    return current;
+                }
+                CountryMetadataSnapshot rebuilt = new CountryMetadataSnapshot(buildCountryMetadataResponse(this), lastUpdate);
+                if (lastUpdate != null) {
+                    snapshot = rebuilt;
+                }
+                return rebuilt;
+            }
+        }
+
+        private DateTime getLastUpdate() {
+            MetadataResolver resolver = getMetadataResolver();
+            return resolver instanceof RefreshableMetadataResolver
+                    ? ((RefreshableMetadataResolver) resolver).getLastUpdate()
+                    : null;
         }
     }
 }
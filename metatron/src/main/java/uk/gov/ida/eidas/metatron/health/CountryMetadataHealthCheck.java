@@ -0,0 +1,38 @@
+package uk.gov.ida.eidas.metatron.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import uk.gov.ida.eidas.metatron.domain.MetadataResolverService;
+import uk.gov.ida.eidas.metatron.exceptions.MetatronClientException;
+
+import java.net.URI;
+
+/**
+ * Reports whether a single country's metadata has been fetched and currently resolves.
+ *
+ * Restarting metatron does not fix a country whose metadata is unavailable, so these checks are
+ * registered on their own registry and served from the admin country healthcheck endpoint rather
+ * than the liveness {@code /healthcheck}.
+ */
+public class CountryMetadataHealthCheck extends HealthCheck {
+
+    private final MetadataResolverService resolverService;
+    private final URI entityId;
+
+    public CountryMetadataHealthCheck(MetadataResolverService resolverService, URI entityId) {
+        this.resolverService = resolverService;
+        this.entityId = entityId;
+    }
+
+    @Override
+    protected Result check() {
+        if (!resolverService.isInitialised(entityId)) {
+            return Result.unhealthy("Metadata resolver has not initialised");
+        }
+        try {
+            resolverService.getCountryMetadataSnapshot(entityId);
+            return Result.healthy("Metadata resolves");
+        } catch (MetatronClientException e) {
+            return Result.unhealthy(e.getMessage());
+        }
+    }
+}
@@ -1,9 +1,41 @@
 package uk.gov.ida.eidas.metatron.health;
 
 import io.prometheus.client.Gauge;
-import uk.gov.ida.eidas.metatron.domain.MetadataResolverService;
+import org.joda.time.DateTime;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.saml2.common.TimeBoundSAMLObject;
+import org.opensaml.saml.saml2.metadata.EntitiesDescriptor;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.KeyDescriptor;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.security.credential.UsageType;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import uk.gov.ida.eidas.metatron.domain.EidasConfig;
+import uk.gov.ida.eidas.metatron.domain.EidasCountryConfig;
+import uk.gov.ida.eidas.metatron.domain.MetadataAcceptanceListener;
+import uk.gov.ida.eidas.metatron.domain.MetadataFetchListener;
+import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
 
-public class CountryMetadataHealthMetrics implements Runnable {
+import javax.ws.rs.ProcessingException;
+import java.net.URI;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * Sets each country's health as its resolver accepts metadata and as each later fetch is
+ * attempted, rather than re-resolving every country on a timer. A country is healthy once it
+ * has accepted metadata, until that metadata's validUntil passes.
+ *
+ * Certificate expiry is read from the accepted document, so it is only worked out again when
+ * a country's metadata changes.
+ */
+public class CountryMetadataHealthMetrics implements MetadataAcceptanceListener, MetadataFetchListener {
 
     private static final io.prometheus.client.Gauge METADATA_FETCH_GAUGE = Gauge
             .build("verify_eidas_connector_metadata_health",
@@ -11,21 +43,85 @@ public class CountryMetadataHealthMetrics implements Runnable {
             .labelNames("entity")
             .register();
 
-    private final MetadataResolverService resolverService;
+    private static final Gauge CERTIFICATE_EXPIRY = Gauge
+            .build("verify_eidas_connector_metadata_certificate_expiry_timestamp_seconds",
+                    "When the certificates in Connector Country Metadata expire")
+            .labelNames("entity", "use")
+            .register();
+
+    private final Map<URI, URI> entityIdsByMetadataUri;
+    private final Map<URI, Optional<DateTime>> acceptedValidUntil = new ConcurrentHashMap<>();
+
+    public CountryMetadataHealthMetrics(EidasConfig countriesConfig) {
+        this.entityIdsByMetadataUri = countriesConfig.getCountries().stream()
+                .collect(Collectors.toMap(
+                        EidasCountryConfig::getConnectorMetadata,
+                        EidasCountryConfig::getEntityId,
+                        (first, second) -> first));
+        entityIdsByMetadataUri.values().forEach(this::updateHealth);
+    }
 
-    public CountryMetadataHealthMetrics(MetadataResolverService resolverService) {
-        this.resolverService = resolverService;
+    @Override
+    public void metadataAccepted(URI entityId, XMLObject metadata) {
+        acceptedValidUntil.put(entityId, Optional.ofNullable(validUntil(metadata)));
+        updateHealth(entityId);
+        findEntityDescriptor(metadata, entityId.toString())
+                .map(entityDescriptor -> entityDescriptor.getSPSSODescriptor(SAMLConstants.SAML20P_NS))
+                .ifPresent(spssoDescriptor -> recordCertificateExpiry(entityId, spssoDescriptor));
+    }
+
+    @Override
+    public void metadataFetched(URI metadataUri, int status, long documentSizeBytes, long durationNanos) {
+        Optional.ofNullable(entityIdsByMetadataUri.get(metadataUri)).ifPresent(this::updateHealth);
     }
 
     @Override
-    public void run() {
-        resolverService.getResolvers().stream().forEach(entityId -> {
-            try {
-                resolverService.getCountryMetadataResponse(entityId);
-                METADATA_FETCH_GAUGE.labels(entityId.toString()).set(1);
-            } catch (Exception e) {
-                METADATA_FETCH_GAUGE.labels(entityId.toString()).set(0);
+    public void metadataFetchFailed(URI metadataUri, ProcessingException cause, long durationNanos) {
+        Optional.ofNullable(entityIdsByMetadataUri.get(metadataUri)).ifPresent(this::updateHealth);
+    }
+
+    private void updateHealth(URI entityId) {
+        Optional<DateTime> validUntil = acceptedValidUntil.get(entityId);
+        boolean healthy = validUntil != null && validUntil.map(DateTime::isAfterNow).orElse(true);
+        METADATA_FETCH_GAUGE.labels(entityId.toString()).set(healthy ? 1 : 0);
+    }
+
+    private void recordCertificateExpiry(URI entityId, SPSSODescriptor spssoDescriptor) {
+        try {
+            for (KeyDescriptor keyDescriptor : spssoDescriptor.getKeyDescriptors()) {
+                for (X509Certificate certificate : KeyInfoSupport.getCertificates(keyDescriptor.getKeyInfo())) {
+                    double notAfterSeconds = certificate.getNotAfter().getTime() / 1000.0;
+                    if (keyDescriptor.getUse() != UsageType.ENCRYPTION) {
+                        CERTIFICATE_EXPIRY.labels(entityId.toString(), "signing").set(notAfterSeconds);
+                    }
+                    if (keyDescriptor.getUse() != UsageType.SIGNING) {
+                        CERTIFICATE_EXPIRY.labels(entityId.toString(), "encryption").set(notAfterSeconds);
+                    }
+                }
             }
-        });
+        } catch (CertificateException e) {
+            ProxyNodeLogger.logException(e, Level.WARNING, String.format("Unable to read certificate expiry for entityId %s", entityId));
+        }
+    }
+
+    private static DateTime validUntil(XMLObject metadata) {
+        return metadata instanceof TimeBoundSAMLObject ? ((TimeBoundSAMLObject) metadata).getValidUntil() : null;
+    }
+
+    private static Optional<EntityDescriptor> findEntityDescriptor(XMLObject metadata, String entityId) {
+        if (metadata instanceof EntityDescriptor) {
+            return Optional.of((EntityDescriptor) metadata).filter(entityDescriptor -> entityId.equals(entityDescriptor.getEntityID()));
+        }
+        if (metadata instanceof EntitiesDescriptor) {
+            EntitiesDescriptor entitiesDescriptor = (EntitiesDescriptor) metadata;
+            return entitiesDescriptor.getEntityDescriptors().stream()
+                    .filter(entityDescriptor -> entityId.equals(entityDescriptor.getEntityID()))
+                    .findFirst()
+                    .or(() -> entitiesDescriptor.getEntitiesDescriptors().stream()
+                            .map(child -> findEntityDescriptor(child, entityId))
+                            .flatMap(Optional::stream)
+                            .findFirst());
+        }
+        return Optional.empty();
     }
 }
@@ -0,0 +1,83 @@
+package uk.gov.ida.eidas.metatron.health;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import uk.gov.ida.eidas.metatron.domain.EidasConfig;
+import uk.gov.ida.eidas.metatron.domain.EidasCountryConfig;
+import uk.gov.ida.eidas.metatron.domain.MetadataFetchListener;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records per-country metrics as each metadata fetch completes or fails, rather than polling.
+ */
+public class MetadataFetchMetrics implements MetadataFetchListener {
+
+    private static final Histogram FETCH_DURATION = Histogram
+            .build("verify_eidas_connector_metadata_fetch_duration_seconds",
+                    "Time taken to fetch Connector Country Metadata")
+            .labelNames("entity", "status")
+            .buckets(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .register();
+
+    private static final Gauge LAST_SUCCESSFUL_FETCH = Gauge
+            .build("verify_eidas_connector_metadata_last_successful_fetch_timestamp_seconds",
+                    "When Connector Country Metadata was last fetched or revalidated successfully")
+            .labelNames("entity")
+            .register();
+
+    private static final Gauge DOCUMENT_SIZE = Gauge
+            .build("verify_eidas_connector_metadata_document_size_bytes",
+                    "Size of the last Connector Country Metadata document received")
+            .labelNames("entity")
+            .register();
+
+    private static final Counter FETCH_FAILURES = Counter
+            .build("verify_eidas_connector_metadata_fetch_failures_total",
+                    "Connector Country Metadata fetches that got no response, by reason")
+            .labelNames("entity", "reason")
+            .register();
+
+    private final Map<URI, String> entityIdsByMetadataUri;
+
+    public MetadataFetchMetrics(EidasConfig countriesConfig) {
+        this.entityIdsByMetadataUri = countriesConfig.getCountries().stream()
+                .collect(Collectors.toMap(
+                        EidasCountryConfig::getConnectorMetadata,
+                        country -> country.getEntityId().toString(),
+                        (first, second) -> first));
+    }
+
+    @Override
+    public void metadataFetched(URI metadataUri, int status, long documentSizeBytes, long durationNanos) {
+        String entity = entity(metadataUri);
+        FETCH_DURATION.labels(entity, String.valueOf(status)).observe(seconds(durationNanos));
+        if (status == Response.Status.OK.getStatusCode() || status == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            LAST_SUCCESSFUL_FETCH.labels(entity).setToCurrentTime();
+            DOCUMENT_SIZE.labels(entity).set(documentSizeBytes);
+        }
+    }
+
+    @Override
+    public void metadataFetchFailed(URI metadataUri, ProcessingException cause, long durationNanos) {
+        String entity = entity(metadataUri);
+        String reason = cause.getCause() instanceof InterruptedIOException ? "timeout" : "connection";
+        FETCH_DURATION.labels(entity, reason).observe(seconds(durationNanos));
+        FETCH_FAILURES.labels(entity, reason).inc();
+    }
+
+    private String entity(URI metadataUri) {
+        return entityIdsByMetadataUri.getOrDefault(metadataUri, metadataUri.toString());
+    }
+
+    private static double seconds(long durationNanos) {
+        return durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -1,32 +1,101 @@
 package uk.gov.ida.eidas.metatron.resources;
 
+import uk.gov.ida.eidas.metatron.domain.CountryMetadataSnapshot;
+import uk.gov.ida.eidas.metatron.domain.MetadataChangeLog;
 import uk.gov.ida.eidas.metatron.domain.MetadataResolverService;
 import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
 import uk.gov.ida.notification.shared.logging.IngressEgressLogging;
 
 import javax.validation.Valid;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @Path("/")
 @IngressEgressLogging
 public class MetatronResource {
 
+    private static final long MAX_WAIT_SECONDS = 30;
+
     private final MetadataResolverService metadataResolverService;
+    private final MetadataChangeLog changeLog;
 
-    public MetatronResource(MetadataResolverService metadataResolverService) {
+    public MetatronResource(MetadataResolverService metadataResolverService, MetadataChangeLog changeLog) {
         this.metadataResolverService = metadataResolverService;
+        this.changeLog = changeLog;
     }
 
     @GET
     @Path("/metadata/{entityId}")
     @Produces(MediaType.APPLICATION_JSON)
     @Valid
-    public CountryMetadataResponse getCountryMetadataResponse(@PathParam("entityId") URI entityId) {
-        return this.metadataResolverService.getCountryMetadataResponse(entityId);
+    public Response getCountryMetadataResponse(@PathParam("entityId") URI entityId, @Context Request request) {
+        CountryMetadataSnapshot snapshot = this.metadataResolverService.getCountryMetadataSnapshot(entityId);
+        return conditionalResponse(request, snapshot.getResponse(), snapshot.getEntityTag(), snapshot.getLastModified());
+    }
+
+    /**
+     * Validated only by entity tag: the set of countries can shrink without any of them having a
+     * newer update, so a Last-Modified date would make clients keep a stale list.
+     */
+    @GET
+    @Path("/metadata")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getAllCountryMetadataResponses(@Context Request request) {
+        List<CountryMetadataSnapshot> snapshots = this.metadataResolverService.getAllCountryMetadataSnapshots();
+        List<CountryMetadataResponse> responses = snapshots.stream()
+                .map(CountryMetadataSnapshot::getResponse)
+                .collect(Collectors.toList());
+        return conditionalResponse(request, responses, CountryMetadataSnapshot.combinedEntityTag(snapshots), Optional.empty());
+    }
+
+    /**
+     * Long-polls for countries whose metadata changed since the given version, answering with
+     * no changes if there are none within the wait.
+     */
+    @GET
+    @Path("/metadata/changes")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void awaitMetadataChanges(
+            @QueryParam("version") @DefaultValue("") String version,
+            @QueryParam("waitSeconds") @DefaultValue("30") long waitSeconds,
+            @Suspended AsyncResponse asyncResponse) {
+        AtomicReference<Runnable> cancelWait = new AtomicReference<>(() -> {});
+        asyncResponse.setTimeoutHandler(response -> {
+            cancelWait.get().run();
+            response.resume(changeLog.noChangesSince(version));
+        });
+        asyncResponse.setTimeout(Math.max(1, Math.min(waitSeconds, MAX_WAIT_SECONDS)), TimeUnit.SECONDS);
+        cancelWait.set(changeLog.awaitChangesSince(version, asyncResponse::resume));
+    }
+
+    private static Response conditionalResponse(Request request, Object entity, String entityTag, Optional<Date> lastModified) {
+        EntityTag tag = new EntityTag(entityTag);
+        Response.ResponseBuilder notModified = lastModified
+                .map(date -> request.evaluatePreconditions(date, tag))
+                .orElseGet(() -> request.evaluatePreconditions(tag));
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+        Response.ResponseBuilder ok = Response.ok(entity).tag(tag);
+        lastModified.ifPresent(ok::lastModified);
+        return ok.build();
     }
 }
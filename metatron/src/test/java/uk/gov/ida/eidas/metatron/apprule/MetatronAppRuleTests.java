@@ -18,11 +18,13 @@ import uk.gov.ida.eidas.metatron.MetatronApplication;
 import uk.gov.ida.eidas.metatron.MetatronConfiguration;
 import uk.gov.ida.eidas.metatron.apprule.rules.CountryMetadataClientRule;
 import uk.gov.ida.eidas.metatron.apprule.rules.TestCountryMetadataResource;
+import uk.gov.ida.eidas.metatron.domain.MetadataChangeLog;
 import uk.gov.ida.eidas.metatron.resources.MetatronResource;
 import uk.gov.ida.jerseyclient.ErrorHandlingClient;
 import uk.gov.ida.jerseyclient.JsonResponseProcessor;
 import uk.gov.ida.notification.apprule.rules.AppRule;
 import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
+import uk.gov.ida.notification.contracts.metadata.MetadataChanges;
 import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLoggingFilter;
@@ -30,6 +32,9 @@ import uk.gov.ida.notification.shared.logging.ProxyNodeMDCKey;
 import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
 import uk.gov.ida.saml.core.test.OpenSAMLRunner;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URISyntaxException;
@@ -133,6 +138,93 @@ public class MetatronAppRuleTests {
         assertResponseIsAnErrorMap(response);
     }
 
+    @Test
+    public void unchangedMetadataIsNotModifiedForMatchingEntityTag() throws URISyntaxException {
+        String entityId = getEntityId(TestCountryMetadataResource.VALID_ONE);
+        Response first = metatronAppRule.target(getUriString(entityId)).request().get();
+        EntityTag entityTag = first.getEntityTag();
+        assertThat(entityTag).isNotNull();
+        assertThat(first.getLastModified()).isNotNull();
+
+        Response second = metatronAppRule.target(getUriString(entityId)).request()
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag.toString())
+                .get();
+
+        assertThat(second.getStatusInfo()).isEqualTo(Response.Status.NOT_MODIFIED);
+        assertThat(second.getEntityTag()).isEqualTo(entityTag);
+    }
+
+    @Test
+    public void bulkEndpointReturnsEveryResolvableEnabledCountry() throws URISyntaxException {
+        Response response = metatronAppRule.target("/metadata").request().get();
+        List<CountryMetadataResponse> all = response.readEntity(new GenericType<List<CountryMetadataResponse>>() {});
+
+        assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+        assertThat(response.getEntityTag()).isNotNull();
+        assertThat(response.getLastModified()).isNull();
+        assertThat(all).extracting(CountryMetadataResponse::getEntityId).contains(
+                getEntityId(TestCountryMetadataResource.VALID_ONE),
+                getEntityId(TestCountryMetadataResource.VALID_TWO));
+        assertThat(all).extracting(CountryMetadataResponse::getEntityId).doesNotContain(
+                getEntityId(TestCountryMetadataResource.DISABLED),
+                getEntityId(TestCountryMetadataResource.EXPIRED));
+
+        Response revalidated = metatronAppRule.target("/metadata").request()
+                .header(HttpHeaders.IF_NONE_MATCH, response.getEntityTag().toString())
+                .get();
+        assertThat(revalidated.getStatusInfo()).isEqualTo(Response.Status.NOT_MODIFIED);
+
+        Response revalidatedByDate = metatronAppRule.target("/metadata").request()
+                .header(HttpHeaders.IF_MODIFIED_SINCE, "Fri, 31 Dec 2100 23:59:59 GMT")
+                .get();
+        assertThat(revalidatedByDate.getStatusInfo()).isEqualTo(Response.Status.OK);
+    }
+
+    @Test
+    public void changesFeedReportsResolvableCountriesToNewSubscribers() throws URISyntaxException {
+        MetadataChanges fromUnknownVersion = metatronAppRule.target("/metadata/changes?version=unknown&waitSeconds=1").request().get(MetadataChanges.class);
+        assertThat(fromUnknownVersion.isComplete()).isFalse();
+        assertThat(fromUnknownVersion.getVersion()).isNotEmpty();
+
+        MetadataChanges fromNothingResolved = metatronAppRule.target("/metadata/changes")
+                .queryParam("version", MetadataChangeLog.EMPTY_VERSION)
+                .queryParam("waitSeconds", 5)
+                .request()
+                .get(MetadataChanges.class);
+
+        assertThat(fromNothingResolved.isComplete()).isTrue();
+        assertThat(fromNothingResolved.getChangedEntityIds())
+                .isNotEmpty()
+                .isSubsetOf(getEntityId(TestCountryMetadataResource.VALID_ONE), getEntityId(TestCountryMetadataResource.VALID_TWO));
+    }
+
+    @Test
+    public void healthChecksReportEachCountrySeparately() throws URISyntaxException {
+        String validEntityId = getEntityId(TestCountryMetadataResource.VALID_ONE);
+        String expiredEntityId = getEntityId(TestCountryMetadataResource.EXPIRED);
+        metatronAppRule.target(getUriString(validEntityId)).request().get();
+        metatronAppRule.target(getUriString(expiredEntityId)).request().get();
+
+        Response countryResponse = getAdmin("/country-healthcheck");
+        Map<String, Map<String, Object>> countryHealthChecks = countryResponse.readEntity(new GenericType<Map<String, Map<String, Object>>>() {});
+
+        assertThat(countryResponse.getStatus()).isEqualTo(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+        assertThat(countryHealthChecks.get("country-metadata-" + validEntityId)).containsEntry("healthy", true);
+        assertThat(countryHealthChecks.get("country-metadata-" + expiredEntityId)).containsEntry("healthy", false);
+    }
+
+    @Test
+    public void unavailableCountryMetadataDoesNotFailTheLivenessHealthCheck() throws URISyntaxException {
+        String expiredEntityId = getEntityId(TestCountryMetadataResource.EXPIRED);
+        metatronAppRule.target(getUriString(expiredEntityId)).request().get();
+
+        Response livenessResponse = getAdmin("/healthcheck");
+        Map<String, Map<String, Object>> healthChecks = livenessResponse.readEntity(new GenericType<Map<String, Map<String, Object>>>() {});
+
+        assertThat(livenessResponse.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(healthChecks).doesNotContainKey("country-metadata-" + expiredEntityId);
+    }
+
     @Test
     public void ingressAndEgressShouldBeLoggedByFilter() throws URISyntaxException {
 
@@ -175,6 +267,13 @@ public class MetatronAppRuleTests {
         return "http://" + UriBuilder.fromMethod(MetatronResource.class, "getCountryMetadataResponse").host("localhost").port(metatronAppRule.getLocalPort()).build(entityId).toString();
     }
 
+    private Response getAdmin(String path) {
+        return metatronAppRule.client()
+                .target("http://localhost:" + metatronAppRule.getAdminPort() + path)
+                .request()
+                .get();
+    }
+
     private void assertResponseIsAnErrorMap(Response response) {
         Map map = response.readEntity(Map.class);
         assertThat(map.containsKey("code")).isTrue();
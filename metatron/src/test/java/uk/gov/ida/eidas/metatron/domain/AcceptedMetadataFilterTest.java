@@ -0,0 +1,83 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import net.shibboleth.utilities.java.support.xml.BasicParserPool;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opensaml.core.config.InitializationService;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import uk.gov.ida.saml.core.test.builders.metadata.EntityDescriptorBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AcceptedMetadataFilterTest {
+
+    private static final URI ENTITY_ID = URI.create("https://connector.example.com/metadata");
+    private static final URI METADATA_URI = URI.create("https://connector.example.com/metadata/document");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MetadataAcceptanceListener acceptanceListener = mock(MetadataAcceptanceListener.class);
+
+    @BeforeClass
+    public static void initialiseOpenSaml() throws Exception {
+        InitializationService.initialize();
+    }
+
+    @Test
+    public void shouldPersistAndReportTheAcceptedDocument() throws Exception {
+        MetadataBackingStore backingStore = new MetadataBackingStore(folder.getRoot().toPath());
+        EntityDescriptor accepted = entityDescriptor();
+
+        Object filtered = new AcceptedMetadataFilter(country(), backingStore, acceptanceListener).filter(accepted);
+
+        assertThat(filtered).isSameAs(accepted);
+        verify(acceptanceListener).metadataAccepted(ENTITY_ID, accepted);
+        byte[] persisted = new MetadataBackingStore(folder.getRoot().toPath()).takeStartupCopy(METADATA_URI).orElseThrow();
+        EntityDescriptor reloaded = (EntityDescriptor) XMLObjectSupport.unmarshallFromInputStream(parserPool(), new ByteArrayInputStream(persisted));
+        assertThat(reloaded.getEntityID()).isEqualTo(ENTITY_ID.toString());
+        assertThat(reloaded.getValidUntil().getMillis()).isEqualTo(accepted.getValidUntil().getMillis());
+    }
+
+    @Test
+    public void shouldStillReportAcceptedDocumentWhenBackingStoreIsDisabled() throws Exception {
+        EntityDescriptor accepted = entityDescriptor();
+
+        new AcceptedMetadataFilter(country(), MetadataBackingStore.disabled(), acceptanceListener).filter(accepted);
+
+        verify(acceptanceListener).metadataAccepted(ENTITY_ID, accepted);
+    }
+
+    private static EidasCountryConfig country() {
+        EidasCountryConfig country = mock(EidasCountryConfig.class);
+        when(country.getEntityId()).thenReturn(ENTITY_ID);
+        when(country.getConnectorMetadata()).thenReturn(METADATA_URI);
+        return country;
+    }
+
+    private static EntityDescriptor entityDescriptor() throws Exception {
+        return EntityDescriptorBuilder.anEntityDescriptor()
+                .withEntityId(ENTITY_ID.toString())
+                .withIdpSsoDescriptor(null)
+                .withValidUntil(DateTime.now().plusWeeks(2))
+                .withSignature(null)
+                .build();
+    }
+
+    private static BasicParserPool parserPool() throws Exception {
+        BasicParserPool parserPool = new BasicParserPool();
+        parserPool.setNamespaceAware(true);
+        parserPool.initialize();
+        return parserPool;
+    }
+}
@@ -0,0 +1,56 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetadataBackingStoreTest {
+
+    private static final URI METADATA_URI = URI.create("https://connector.example.com/metadata");
+    private static final byte[] DOCUMENT = "<md:EntityDescriptor/>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWER_DOCUMENT = "<md:EntityDescriptor ID=\"newer\"/>".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldServeAcceptedDocumentOnceAfterRestart() throws IOException {
+        MetadataBackingStore beforeRestart = new MetadataBackingStore(folder.getRoot().toPath());
+        beforeRestart.persistAccepted(METADATA_URI, DOCUMENT);
+
+        MetadataBackingStore afterRestart = new MetadataBackingStore(folder.getRoot().toPath());
+
+        assertThat(afterRestart.hasStartupCopy(METADATA_URI)).isTrue();
+        assertThat(afterRestart.takeStartupCopy(METADATA_URI)).contains(DOCUMENT);
+        assertThat(afterRestart.hasStartupCopy(METADATA_URI)).isFalse();
+        assertThat(afterRestart.takeStartupCopy(METADATA_URI)).isEmpty();
+    }
+
+    @Test
+    public void shouldReplaceCachedDocumentWhenANewerOneIsAccepted() throws IOException {
+        MetadataBackingStore store = new MetadataBackingStore(folder.getRoot().toPath());
+        store.persistAccepted(METADATA_URI, DOCUMENT);
+        store.persistAccepted(METADATA_URI, NEWER_DOCUMENT);
+
+        assertThat(new MetadataBackingStore(folder.getRoot().toPath()).takeStartupCopy(METADATA_URI)).contains(NEWER_DOCUMENT);
+        try (var files = Files.list(folder.getRoot().toPath())) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    public void disabledStoreNeverServesOrPersists() {
+        MetadataBackingStore store = MetadataBackingStore.disabled();
+        store.persistAccepted(METADATA_URI, DOCUMENT);
+
+        assertThat(store.hasStartupCopy(METADATA_URI)).isFalse();
+        assertThat(store.takeStartupCopy(METADATA_URI)).isEmpty();
+    }
+}
@@ -0,0 +1,111 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import org.junit.Test;
+import uk.gov.ida.notification.contracts.metadata.MetadataChanges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetadataChangeLogTest {
+
+    private static final String COUNTRY_A = "https://a.example.com/metadata";
+    private static final String COUNTRY_B = "https://b.example.com/metadata";
+
+    private final MetadataChangeLog changeLog = new MetadataChangeLog(3);
+
+    @Test
+    public void shouldListCountriesThatDifferFromTheCallersVersion() {
+        changeLog.update(Map.of(COUNTRY_A, "a1", COUNTRY_B, "b1"));
+        String version = currentVersion();
+        changeLog.update(Map.of(COUNTRY_A, "a2", COUNTRY_B, "b1"));
+
+        MetadataChanges changes = changeLog.changesSince(version).orElseThrow();
+
+        assertThat(changes.isComplete()).isTrue();
+        assertThat(changes.getChangedEntityIds()).containsExactly(COUNTRY_A);
+        assertThat(changes.getVersion()).isNotEqualTo(version);
+    }
+
+    @Test
+    public void shouldListCountriesThatStartOrStopResolving() {
+        changeLog.update(Map.of(COUNTRY_A, "a1"));
+        String version = currentVersion();
+        changeLog.update(Map.of(COUNTRY_B, "b1"));
+
+        assertThat(changeLog.changesSince(version).orElseThrow().getChangedEntityIds()).containsExactly(COUNTRY_A, COUNTRY_B);
+    }
+
+    @Test
+    public void shouldDeriveTheSameVersionFromTheSameMetadataOnEveryInstance() {
+        MetadataChangeLog otherInstance = new MetadataChangeLog(3);
+        changeLog.update(Map.of(COUNTRY_A, "a1", COUNTRY_B, "b1"));
+        otherInstance.update(Map.of(COUNTRY_B, "b1", COUNTRY_A, "a1"));
+
+        assertThat(otherInstance.changesSince(currentVersion())).isEmpty();
+    }
+
+    @Test
+    public void shouldReportIncompleteChangesForUnknownOrForgottenVersions() {
+        String empty = MetadataChangeLog.EMPTY_VERSION;
+        for (int i = 0; i < 3; i++) {
+            changeLog.update(Map.of(COUNTRY_A, "a" + i));
+        }
+
+        assertThat(changeLog.changesSince("unknown").orElseThrow().isComplete()).isFalse();
+        assertThat(changeLog.changesSince(empty).orElseThrow().isComplete()).isFalse();
+    }
+
+    @Test
+    public void shouldNotPublishANewVersionWhenNothingChanged() {
+        changeLog.update(Map.of(COUNTRY_A, "a1"));
+        String version = currentVersion();
+        List<MetadataChanges> notified = new ArrayList<>();
+        changeLog.awaitChangesSince(version, notified::add);
+
+        changeLog.update(Map.of(COUNTRY_A, "a1"));
+
+        assertThat(notified).isEmpty();
+        assertThat(changeLog.changesSince(version)).isEmpty();
+    }
+
+    @Test
+    public void shouldWakeWaitersOnTheNextChange() {
+        changeLog.update(Map.of(COUNTRY_A, "a1"));
+        List<MetadataChanges> notified = new ArrayList<>();
+        changeLog.awaitChangesSince(currentVersion(), notified::add);
+
+        changeLog.update(Map.of(COUNTRY_A, "a2"));
+
+        assertThat(notified).hasSize(1);
+        assertThat(notified.get(0).getChangedEntityIds()).containsExactly(COUNTRY_A);
+    }
+
+    @Test
+    public void shouldNotWakeCancelledWaiters() {
+        List<MetadataChanges> notified = new ArrayList<>();
+        Runnable cancel = changeLog.awaitChangesSince(MetadataChangeLog.EMPTY_VERSION, notified::add);
+
+        cancel.run();
+        changeLog.update(Map.of(COUNTRY_A, "a1"));
+
+        assertThat(notified).isEmpty();
+    }
+
+    @Test
+    public void shouldAnswerCallersThatAreAlreadyBehindImmediately() {
+        changeLog.update(Map.of(COUNTRY_A, "a1"));
+        List<MetadataChanges> notified = new ArrayList<>();
+
+        changeLog.awaitChangesSince(MetadataChangeLog.EMPTY_VERSION, notified::add);
+
+        assertThat(notified).hasSize(1);
+        assertThat(notified.get(0).getChangedEntityIds()).containsExactly(COUNTRY_A);
+    }
+
+    private String currentVersion() {
+        return changeLog.changesSince("unknown").orElseThrow().getVersion();
+    }
+}
@@ -0,0 +1,115 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import io.dropwizard.testing.junit.DropwizardClientRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import uk.gov.ida.eidas.metatron.MetadataClientConfiguration;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MetadataClientFactoryTest {
+
+    private static final String METADATA = "<md:EntityDescriptor/>";
+    private static final EntityTag ENTITY_TAG = new EntityTag("v1");
+    private static final AtomicInteger fullResponses = new AtomicInteger();
+    private static final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    @ClassRule
+    public static final DropwizardClientRule metadataServer = new DropwizardClientRule(new TestMetadataResource());
+
+    private final List<Integer> fetches = new CopyOnWriteArrayList<>();
+    private final List<URI> failedFetches = new CopyOnWriteArrayList<>();
+    private MetadataClientFactory clientFactory;
+
+    @Before
+    public void setUp() {
+        fullResponses.set(0);
+        notModifiedResponses.set(0);
+        clientFactory = new MetadataClientFactory(new MetadataClientConfiguration(), new RecordingFetchListener(), MetadataBackingStore.disabled());
+    }
+
+    @After
+    public void tearDown() {
+        clientFactory.stop();
+    }
+
+    @Test
+    public void shouldShareClientBetweenCountriesWithSameTruststore() {
+        assertThat(clientFactory.getClient(Optional.empty())).isSameAs(clientFactory.getClient(Optional.empty()));
+    }
+
+    @Test
+    public void shouldReplayPreviousBodyWhenMetadataNotModified() {
+        Client client = clientFactory.getClient(Optional.empty());
+
+        String first = client.target(metadataServer.baseUri()).path("metadata").request().get(String.class);
+        Response second = client.target(metadataServer.baseUri()).path("metadata").request().get();
+
+        assertThat(first).isEqualTo(METADATA);
+        assertThat(second.getStatus()).isEqualTo(Response.Status.OK.getStatusCode());
+        assertThat(second.readEntity(String.class)).isEqualTo(METADATA);
+        assertThat(fullResponses.get()).isEqualTo(1);
+        assertThat(notModifiedResponses.get()).isEqualTo(1);
+        assertThat(fetches).containsExactly(200, 304);
+    }
+
+    @Test
+    public void shouldReportFetchesThatFailToConnect() throws IOException {
+        URI unreachable;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unreachable = URI.create("http://localhost:" + socket.getLocalPort() + "/metadata");
+        }
+        Client client = clientFactory.getClient(Optional.empty());
+
+        assertThatThrownBy(() -> client.target(unreachable).request().get()).isInstanceOf(ProcessingException.class);
+        assertThat(failedFetches).containsExactly(unreachable);
+        assertThat(fetches).isEmpty();
+    }
+
+    private class RecordingFetchListener implements MetadataFetchListener {
+        @Override
+        public void metadataFetched(URI metadataUri, int status, long documentSizeBytes, long durationNanos) {
+            fetches.add(status);
+        }
+
+        @Override
+        public void metadataFetchFailed(URI metadataUri, ProcessingException cause, long durationNanos) {
+            failedFetches.add(metadataUri);
+        }
+    }
+
+    @Path("/metadata")
+    public static class TestMetadataResource {
+        @GET
+        @Produces(MediaType.APPLICATION_XML)
+        public Response getMetadata(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+            if (ENTITY_TAG.toString().equals(ifNoneMatch)) {
+                notModifiedResponses.incrementAndGet();
+                return Response.notModified(ENTITY_TAG).build();
+            }
+            fullResponses.incrementAndGet();
+            return Response.ok(METADATA).tag(ENTITY_TAG).build();
+        }
+    }
+}
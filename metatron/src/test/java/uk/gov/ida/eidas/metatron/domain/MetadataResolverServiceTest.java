@@ -0,0 +1,177 @@
+package uk.gov.ida.eidas.metatron.domain;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.common.xml.SAMLConstants;
+import org.opensaml.saml.metadata.resolver.MetadataResolver;
+import org.opensaml.saml.metadata.resolver.RefreshableMetadataResolver;
+import org.opensaml.saml.saml2.metadata.AssertionConsumerService;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml.saml2.metadata.SPSSODescriptor;
+import org.opensaml.saml.security.impl.MetadataCredentialResolver;
+import org.opensaml.security.x509.X509Credential;
+import uk.gov.ida.eidas.metatron.exceptions.MetatronServerException;
+import uk.gov.ida.saml.metadata.factories.CredentialResolverFactory;
+import uk.gov.ida.saml.metadata.factories.MetadataResolverFactory;
+
+import javax.ws.rs.client.Client;
+import java.net.URI;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetadataResolverServiceTest {
+
+    private static final URI ENTITY_ID = URI.create("https://connector.example.com/metadata");
+    private static final DateTime FIRST_UPDATE = new DateTime(2020, 1, 1, 0, 0);
+    private static final DateTime SECOND_UPDATE = FIRST_UPDATE.plusMinutes(10);
+
+    private final RefreshableMetadataResolver metadataResolver = mock(RefreshableMetadataResolver.class);
+    private final MetadataBackingStore backingStore = mock(MetadataBackingStore.class);
+    private final MetadataResolverFactory metadataResolverFactory = mock(MetadataResolverFactory.class);
+    private final MetadataClientFactory metadataClientFactory = mock(MetadataClientFactory.class);
+    private EntityDescriptor entityDescriptor;
+    private MetadataResolverService service;
+
+    @Before
+    public void setUp() throws Exception {
+        entityDescriptor = entityDescriptor();
+        when(metadataResolver.resolveSingle(any(CriteriaSet.class))).thenReturn(entityDescriptor);
+        when(metadataResolver.getLastUpdate()).thenReturn(FIRST_UPDATE);
+
+        when(metadataResolverFactory.create(any(Client.class), any(URI.class), anyList(), anyLong(), anyLong())).thenReturn(metadataResolver);
+        when(metadataClientFactory.getClient(any())).thenReturn(mock(Client.class));
+        when(metadataClientFactory.getFetchTimeoutMillis()).thenReturn(1000L);
+
+        service = createService();
+    }
+
+    @Test
+    public void shouldReuseSnapshotWhileLastUpdateIsUnchanged() throws Exception {
+        CountryMetadataSnapshot first = service.getCountryMetadataSnapshot(ENTITY_ID);
+        CountryMetadataSnapshot second = service.getCountryMetadataSnapshot(ENTITY_ID);
+
+        assertThat(second).isSameAs(first);
+        verify(metadataResolver, times(1)).resolveSingle(any(CriteriaSet.class));
+    }
+
+    @Test
+    public void shouldRebuildSnapshotAfterRefresh() throws Exception {
+        CountryMetadataSnapshot beforeRefresh = service.getCountryMetadataSnapshot(ENTITY_ID);
+
+        when(metadataResolver.getLastUpdate()).thenReturn(SECOND_UPDATE);
+        CountryMetadataSnapshot afterRefresh = service.getCountryMetadataSnapshot(ENTITY_ID);
+
+        assertThat(afterRefresh).isNotSameAs(beforeRefresh);
+        assertThat(afterRefresh.getLastModified()).contains(SECOND_UPDATE.toDate());
+        assertThat(service.getCountryMetadataSnapshot(ENTITY_ID)).isSameAs(afterRefresh);
+        verify(metadataResolver, times(2)).resolveSingle(any(CriteriaSet.class));
+    }
+
+    @Test
+    public void shouldNotCacheFailedBuild() throws Exception {
+        when(metadataResolver.resolveSingle(any(CriteriaSet.class)))
+                .thenThrow(new ResolverException("unavailable"))
+                .thenReturn(entityDescriptor);
+
+        assertThatThrownBy(() -> service.getCountryMetadataSnapshot(ENTITY_ID)).isInstanceOf(MetatronServerException.class);
+        CountryMetadataSnapshot recovered = service.getCountryMetadataSnapshot(ENTITY_ID);
+
+        assertThat(recovered.getResponse().getEntityId()).isEqualTo(ENTITY_ID.toString());
+        assertThat(service.getCountryMetadataSnapshot(ENTITY_ID)).isSameAs(recovered);
+        verify(metadataResolver, times(2)).resolveSingle(any(CriteriaSet.class));
+    }
+
+    @Test
+    public void shouldNotCacheSnapshotWithoutLastUpdate() throws Exception {
+        when(metadataResolver.getLastUpdate()).thenReturn(null);
+
+        CountryMetadataSnapshot first = service.getCountryMetadataSnapshot(ENTITY_ID);
+        CountryMetadataSnapshot second = service.getCountryMetadataSnapshot(ENTITY_ID);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getEntityTag()).isEqualTo(first.getEntityTag());
+    }
+
+    @Test
+    public void shouldFetchFromSourceWhenCachedMetadataFailsToInitialise() throws Exception {
+        when(backingStore.hasStartupCopy(ENTITY_ID)).thenReturn(true);
+        when(metadataResolverFactory.create(any(Client.class), any(URI.class), anyList(), anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("cached metadata has expired"))
+                .thenReturn(metadataResolver);
+
+        MetadataResolverService restarted = createService();
+
+        assertThat(restarted.isInitialised(ENTITY_ID)).isTrue();
+        assertThat(restarted.getCountryMetadataSnapshot(ENTITY_ID).getResponse().getEntityId()).isEqualTo(ENTITY_ID.toString());
+        verify(metadataResolver, never()).refresh();
+    }
+
+    private MetadataResolverService createService() throws Exception {
+        return new MetadataResolverService(
+                countriesConfig(),
+                metadataResolverFactory,
+                credentialResolverFactory(),
+                metadataClientFactory,
+                backingStore,
+                mock(MetadataAcceptanceListener.class),
+                Runnable::run);
+    }
+
+    private static EidasConfig countriesConfig() throws Exception {
+        KeyStore emptyTruststore = KeyStore.getInstance(KeyStore.getDefaultType());
+        emptyTruststore.load(null, null);
+
+        EidasCountryConfig country = mock(EidasCountryConfig.class);
+        when(country.getEntityId()).thenReturn(ENTITY_ID);
+        when(country.getConnectorMetadata()).thenReturn(ENTITY_ID);
+        when(country.getCountryCode()).thenReturn("CC");
+        when(country.isEnabled()).thenReturn(true);
+        when(country.getMetadataTruststore()).thenReturn(emptyTruststore);
+        when(country.getTlsTruststore()).thenReturn(Optional.empty());
+
+        EidasConfig config = mock(EidasConfig.class);
+        when(config.getCountries()).thenReturn(List.of(country));
+        return config;
+    }
+
+    private static CredentialResolverFactory credentialResolverFactory() throws Exception {
+        X509Certificate certificate = mock(X509Certificate.class);
+        when(certificate.getEncoded()).thenReturn(new byte[] {1, 2, 3});
+        X509Credential credential = mock(X509Credential.class);
+        when(credential.getEntityCertificate()).thenReturn(certificate);
+        MetadataCredentialResolver credentialResolver = mock(MetadataCredentialResolver.class);
+        when(credentialResolver.resolveSingle(any(CriteriaSet.class))).thenReturn(credential);
+
+        CredentialResolverFactory credentialResolverFactory = mock(CredentialResolverFactory.class);
+        when(credentialResolverFactory.create(any(MetadataResolver.class))).thenReturn(credentialResolver);
+        return credentialResolverFactory;
+    }
+
+    private static EntityDescriptor entityDescriptor() {
+        AssertionConsumerService assertionConsumerService = mock(AssertionConsumerService.class);
+        when(assertionConsumerService.getLocation()).thenReturn("https://connector.example.com/acs");
+        when(assertionConsumerService.getIndex()).thenReturn(0);
+        when(assertionConsumerService.isDefault()).thenReturn(true);
+        SPSSODescriptor spssoDescriptor = mock(SPSSODescriptor.class);
+        when(spssoDescriptor.getAssertionConsumerServices()).thenReturn(List.of(assertionConsumerService));
+        EntityDescriptor entityDescriptor = mock(EntityDescriptor.class);
+        when(entityDescriptor.getSPSSODescriptor(SAMLConstants.SAML20P_NS)).thenReturn(spssoDescriptor);
+        return entityDescriptor;
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.ida.eidas.metatron.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import org.junit.Test;
+import uk.gov.ida.eidas.metatron.domain.CountryMetadataSnapshot;
+import uk.gov.ida.eidas.metatron.domain.MetadataResolverService;
+import uk.gov.ida.eidas.metatron.exceptions.MetatronClientException;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CountryMetadataHealthCheckTest {
+
+    private final URI entityId = URI.create("https://country.example.com/metadata");
+    private final MetadataResolverService resolverService = mock(MetadataResolverService.class);
+    private final CountryMetadataHealthCheck healthCheck = new CountryMetadataHealthCheck(resolverService, entityId);
+
+    @Test
+    public void healthyWhenCountryMetadataResolves() {
+        when(resolverService.isInitialised(entityId)).thenReturn(true);
+        when(resolverService.getCountryMetadataSnapshot(entityId)).thenReturn(mock(CountryMetadataSnapshot.class));
+
+        HealthCheck.Result result = healthCheck.execute();
+
+        assertThat(result.isHealthy()).isTrue();
+    }
+
+    @Test
+    public void unhealthyWhenCountryMetadataDoesNotResolve() {
+        when(resolverService.isInitialised(entityId)).thenReturn(true);
+        when(resolverService.getCountryMetadataSnapshot(entityId)).thenThrow(new MetatronClientException("Metadata has expired"));
+
+        HealthCheck.Result result = healthCheck.execute();
+
+        assertThat(result.isHealthy()).isFalse();
+        assertThat(result.getMessage()).isEqualTo("Metadata has expired");
+    }
+
+    @Test
+    public void unhealthyUntilTheResolverHasInitialised() {
+        when(resolverService.isInitialised(entityId)).thenReturn(false);
+
+        HealthCheck.Result result = healthCheck.execute();
+
+        assertThat(result.isHealthy()).isFalse();
+    }
+}
@@ -0,0 +1,122 @@
+package uk.gov.ida.eidas.metatron.health;
+
+import io.prometheus.client.CollectorRegistry;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.core.config.InitializationService;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import uk.gov.ida.eidas.metatron.domain.EidasConfig;
+import uk.gov.ida.eidas.metatron.domain.EidasCountryConfig;
+import uk.gov.ida.saml.core.test.TestCertificateStrings;
+import uk.gov.ida.saml.core.test.builders.metadata.EntityDescriptorBuilder;
+import uk.gov.ida.saml.core.test.builders.metadata.KeyDescriptorBuilder;
+import uk.gov.ida.saml.core.test.builders.metadata.SPSSODescriptorBuilder;
+
+import javax.ws.rs.ProcessingException;
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CountryMetadataHealthMetricsTest {
+
+    // Each test uses its own country, as the metrics are registered once per JVM
+    private final URI entityId = URI.create("https://" + UUID.randomUUID() + ".example.com/metadata");
+    private final URI metadataUri = URI.create(entityId + "/document");
+    private final CountryMetadataHealthMetrics metrics = new CountryMetadataHealthMetrics(countriesConfig(entityId, metadataUri));
+
+    @BeforeClass
+    public static void initialiseOpenSaml() throws Exception {
+        InitializationService.initialize();
+    }
+
+    @Test
+    public void shouldBeUnhealthyUntilMetadataIsAccepted() throws Exception {
+        assertThat(health()).isEqualTo(0);
+
+        metrics.metadataFetchFailed(metadataUri, new ProcessingException(new ConnectException()), 0);
+        assertThat(health()).isEqualTo(0);
+
+        metrics.metadataAccepted(entityId, entityDescriptor(DateTime.now().plusWeeks(2)));
+        assertThat(health()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldStayHealthyWhenRefreshFailsWhileAcceptedMetadataIsValid() throws Exception {
+        metrics.metadataAccepted(entityId, entityDescriptor(DateTime.now().plusWeeks(2)));
+
+        metrics.metadataFetchFailed(metadataUri, new ProcessingException(new ConnectException()), 0);
+        metrics.metadataFetched(metadataUri, 500, 0, 0);
+
+        assertThat(health()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldBecomeUnhealthyOnFirstFetchAfterAcceptedMetadataExpires() throws Exception {
+        metrics.metadataAccepted(entityId, entityDescriptor(DateTime.now().plusMillis(50)));
+        assertThat(health()).isEqualTo(1);
+
+        Thread.sleep(100);
+        metrics.metadataFetched(metadataUri, 200, 1234, 0);
+
+        assertThat(health()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRecordCertificateExpiryFromAcceptedMetadata() throws Exception {
+        metrics.metadataAccepted(entityId, entityDescriptor(DateTime.now().plusWeeks(2)));
+
+        assertThat(certificateExpiry("signing")).isEqualTo(notAfterSeconds(TestCertificateStrings.TEST_RP_PUBLIC_SIGNING_CERT));
+        assertThat(certificateExpiry("encryption")).isEqualTo(notAfterSeconds(TestCertificateStrings.TEST_RP_PUBLIC_ENCRYPTION_CERT));
+    }
+
+    private Double health() {
+        return CollectorRegistry.defaultRegistry.getSampleValue("verify_eidas_connector_metadata_health",
+                new String[] {"entity"}, new String[] {entityId.toString()});
+    }
+
+    private Double certificateExpiry(String use) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("verify_eidas_connector_metadata_certificate_expiry_timestamp_seconds",
+                new String[] {"entity", "use"}, new String[] {entityId.toString(), use});
+    }
+
+    private EntityDescriptor entityDescriptor(DateTime validUntil) throws Exception {
+        return EntityDescriptorBuilder.anEntityDescriptor()
+                .withEntityId(entityId.toString())
+                .withIdpSsoDescriptor(null)
+                .setAddDefaultSpServiceDescriptor(false)
+                .addSpServiceDescriptor(SPSSODescriptorBuilder.anSpServiceDescriptor()
+                        .withoutDefaultSigningKey()
+                        .withoutDefaultEncryptionKey()
+                        .addKeyDescriptor(KeyDescriptorBuilder.aKeyDescriptor().withX509ForSigning(TestCertificateStrings.TEST_RP_PUBLIC_SIGNING_CERT).build())
+                        .addKeyDescriptor(KeyDescriptorBuilder.aKeyDescriptor().withX509ForEncryption(TestCertificateStrings.TEST_RP_PUBLIC_ENCRYPTION_CERT).build())
+                        .build())
+                .withValidUntil(validUntil)
+                .withSignature(null)
+                .build();
+    }
+
+    private static double notAfterSeconds(String base64Certificate) throws Exception {
+        X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(Base64.getMimeDecoder().decode(base64Certificate)));
+        return certificate.getNotAfter().getTime() / 1000.0;
+    }
+
+    private static EidasConfig countriesConfig(URI entityId, URI metadataUri) {
+        EidasCountryConfig country = mock(EidasCountryConfig.class);
+        when(country.getEntityId()).thenReturn(entityId);
+        when(country.getConnectorMetadata()).thenReturn(metadataUri);
+        EidasConfig config = mock(EidasConfig.class);
+        when(config.getCountries()).thenReturn(List.of(country));
+        return config;
+    }
+}
@@ -0,0 +1,86 @@
+package uk.gov.ida.eidas.metatron.health;
+
+import io.prometheus.client.CollectorRegistry;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Test;
+import uk.gov.ida.eidas.metatron.domain.EidasConfig;
+import uk.gov.ida.eidas.metatron.domain.EidasCountryConfig;
+
+import javax.ws.rs.ProcessingException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetadataFetchMetricsTest {
+
+    // Each test uses its own country, as the metrics are registered once per JVM
+    private final URI entityId = URI.create("https://" + UUID.randomUUID() + ".example.com/metadata");
+    private final URI metadataUri = URI.create(entityId + "/document");
+    private final MetadataFetchMetrics metrics = new MetadataFetchMetrics(countriesConfig(entityId, metadataUri));
+
+    @Test
+    public void shouldRecordSuccessfulFetchesAgainstTheirCountry() {
+        long beforeFetch = System.currentTimeMillis() / 1000;
+
+        metrics.metadataFetched(metadataUri, 200, 1234, TimeUnit.MILLISECONDS.toNanos(300));
+
+        assertThat(sample("verify_eidas_connector_metadata_fetch_duration_seconds_count", "status", "200")).isEqualTo(1);
+        assertThat(sample("verify_eidas_connector_metadata_fetch_duration_seconds_sum", "status", "200")).isCloseTo(0.3, within(0.001));
+        assertThat(sample("verify_eidas_connector_metadata_document_size_bytes")).isEqualTo(1234);
+        assertThat(sample("verify_eidas_connector_metadata_last_successful_fetch_timestamp_seconds")).isGreaterThanOrEqualTo(beforeFetch);
+    }
+
+    @Test
+    public void shouldTreatRevalidationAsSuccessfulFetch() {
+        metrics.metadataFetched(metadataUri, 304, 1234, 0);
+
+        assertThat(sample("verify_eidas_connector_metadata_fetch_duration_seconds_count", "status", "304")).isEqualTo(1);
+        assertThat(sample("verify_eidas_connector_metadata_document_size_bytes")).isEqualTo(1234);
+        assertThat(sample("verify_eidas_connector_metadata_last_successful_fetch_timestamp_seconds")).isNotNull();
+    }
+
+    @Test
+    public void shouldNotRecordErrorResponsesAsSuccessful() {
+        metrics.metadataFetched(metadataUri, 500, 0, 0);
+
+        assertThat(sample("verify_eidas_connector_metadata_fetch_duration_seconds_count", "status", "500")).isEqualTo(1);
+        assertThat(sample("verify_eidas_connector_metadata_document_size_bytes")).isNull();
+        assertThat(sample("verify_eidas_connector_metadata_last_successful_fetch_timestamp_seconds")).isNull();
+    }
+
+    @Test
+    public void shouldRecordFetchFailuresByReason() {
+        metrics.metadataFetchFailed(metadataUri, new ProcessingException(new ConnectTimeoutException()), 0);
+        metrics.metadataFetchFailed(metadataUri, new ProcessingException(new ConnectException()), 0);
+        metrics.metadataFetchFailed(metadataUri, new ProcessingException(new ConnectException()), 0);
+
+        assertThat(sample("verify_eidas_connector_metadata_fetch_failures_total", "reason", "timeout")).isEqualTo(1);
+        assertThat(sample("verify_eidas_connector_metadata_fetch_failures_total", "reason", "connection")).isEqualTo(2);
+        assertThat(sample("verify_eidas_connector_metadata_fetch_duration_seconds_count", "status", "connection")).isEqualTo(2);
+        assertThat(sample("verify_eidas_connector_metadata_last_successful_fetch_timestamp_seconds")).isNull();
+    }
+
+    private Double sample(String name) {
+        return CollectorRegistry.defaultRegistry.getSampleValue(name, new String[] {"entity"}, new String[] {entityId.toString()});
+    }
+
+    private Double sample(String name, String labelName, String labelValue) {
+        return CollectorRegistry.defaultRegistry.getSampleValue(name, new String[] {"entity", labelName}, new String[] {entityId.toString(), labelValue});
+    }
+
+    private static EidasConfig countriesConfig(URI entityId, URI metadataUri) {
+        EidasCountryConfig country = mock(EidasCountryConfig.class);
+        when(country.getEntityId()).thenReturn(entityId);
+        when(country.getConnectorMetadata()).thenReturn(metadataUri);
+        EidasConfig config = mock(EidasConfig.class);
+        when(config.getCountries()).thenReturn(List.of(country));
+        return config;
+    }
+}
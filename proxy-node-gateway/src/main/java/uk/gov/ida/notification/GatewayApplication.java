@@ -24,6 +24,7 @@ import uk.gov.ida.notification.resources.AssetsResource;
 import uk.gov.ida.notification.resources.EidasAuthnRequestResource;
 import uk.gov.ida.notification.resources.HubResponseResource;
 import uk.gov.ida.notification.session.storage.InMemoryStorage;
+import uk.gov.ida.notification.session.storage.NearCachedRedisStorage;
 import uk.gov.ida.notification.session.storage.RedisStorage;
 import uk.gov.ida.notification.session.storage.SessionStore;
 import uk.gov.ida.notification.shared.Urls;
@@ -85,8 +86,7 @@ public class GatewayApplication extends Application<GatewayConfiguration> {
 
         final RedisServiceConfiguration redisService = configuration.getRedisService();
 
-        final SessionStore sessionStorage = redisService.isLocal() ?
-                new InMemoryStorage() : new RedisStorage(redisService);
+        final SessionStore sessionStorage = buildSessionStore(redisService);
 
         final SamlFormViewBuilder samlFormViewBuilder = new SamlFormViewBuilder();
 
@@ -100,6 +100,15 @@ public class GatewayApplication extends Application<GatewayConfiguration> {
         registerInjections(environment);
     }
 
+    private SessionStore buildSessionStore(RedisServiceConfiguration redisService) {
+        if (redisService.isLocal()) {
+            return new InMemoryStorage(redisService);
+        }
+
+        final RedisStorage redisStorage = new RedisStorage(redisService);
+        return redisService.isNearCache() ? new NearCachedRedisStorage(redisService, redisStorage) : redisStorage;
+    }
+
     private void registerProviders(Environment environment) {
         SessionHandler sessionHandler = new SessionHandler();
         sessionHandler.setSessionCookie("gateway-session");
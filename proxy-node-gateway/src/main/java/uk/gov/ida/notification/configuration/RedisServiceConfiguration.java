@@ -2,8 +2,11 @@ package uk.gov.ida.notification.configuration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
+import uk.gov.ida.notification.session.storage.SessionEncoding;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.net.URI;
 import java.time.Duration;
 
@@ -23,6 +26,29 @@ public class RedisServiceConfiguration extends Configuration {
     @JsonProperty
     private Boolean local = false;
 
+    @Valid
+    @Min(1)
+    @JsonProperty
+    private Long localMaxEntries = 100_000L;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private SessionEncoding sessionEncoding = SessionEncoding.JSON;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private RedisTopologyConfiguration topology = new RedisTopologyConfiguration();
+
+    @Valid
+    @JsonProperty
+    private Boolean nearCache = false;
+
+    @Valid
+    @Min(1)
+    @JsonProperty
+    private Long nearCacheMaxEntries = 10_000L;
 
     public URI getUrl() {
         return url;
@@ -35,4 +61,24 @@ public class RedisServiceConfiguration extends Configuration {
     public Boolean isLocal() {
         return local;
     }
+
+    public Long getLocalMaxEntries() {
+        return localMaxEntries;
+    }
+
+    public SessionEncoding getSessionEncoding() {
+        return sessionEncoding;
+    }
+
+    public RedisTopologyConfiguration getTopology() {
+        return topology;
+    }
+
+    public Boolean isNearCache() {
+        return nearCache;
+    }
+
+    public Long getNearCacheMaxEntries() {
+        return nearCacheMaxEntries;
+    }
 }
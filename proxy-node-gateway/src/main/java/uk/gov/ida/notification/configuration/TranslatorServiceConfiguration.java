@@ -10,6 +10,7 @@ import uk.gov.ida.jerseyclient.JsonResponseProcessor;
 import uk.gov.ida.notification.proxy.TranslatorProxy;
 import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
 import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
+import uk.gov.ida.notification.shared.proxy.ProxyNodeStreamingClient;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -30,6 +31,10 @@ public class TranslatorServiceConfiguration extends Configuration {
     @JsonProperty
     private JerseyClientConfiguration clientConfig = new JerseyClientConfiguration();
 
+    @NotNull
+    @JsonProperty
+    private Boolean streamSamlResponses = false;
+
     public URI getUrl() {
         return url;
     }
@@ -38,6 +43,10 @@ public class TranslatorServiceConfiguration extends Configuration {
         return clientConfig;
     }
 
+    public Boolean isStreamSamlResponses() {
+        return streamSamlResponses;
+    }
+
     public TranslatorProxy buildTranslatorProxy(Environment environment) {
         Client client = new JerseyClientBuilder(environment).using(clientConfig).build("translator-client");
         ProxyNodeJsonClient jsonClient = new ProxyNodeJsonClient(
@@ -46,8 +55,12 @@ public class TranslatorServiceConfiguration extends Configuration {
             new IstioHeaderStorage()
         );
 
+        ProxyNodeStreamingClient streamingClient = streamSamlResponses ?
+            new ProxyNodeStreamingClient(client, environment.getObjectMapper(), new IstioHeaderStorage()) : null;
+
         return new TranslatorProxy(
             jsonClient,
+            streamingClient,
             UriBuilder.fromUri(url).path(TRANSLATOR_ROOT).build()
         );
     }
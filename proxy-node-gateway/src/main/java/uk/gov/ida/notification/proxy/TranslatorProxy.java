@@ -6,19 +6,38 @@ import uk.gov.ida.notification.contracts.SamlFailureResponseGenerationRequest;
 import uk.gov.ida.notification.exceptions.FailureResponseGenerationException;
 import uk.gov.ida.notification.exceptions.TranslatorResponseException;
 import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
+import uk.gov.ida.notification.shared.proxy.ProxyNodeStreamingClient;
 
 import javax.ws.rs.core.UriBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
 import static uk.gov.ida.notification.shared.Urls.TranslatorUrls.GENERATE_FAILURE_RESPONSE_PATH;
 import static uk.gov.ida.notification.shared.Urls.TranslatorUrls.TRANSLATE_HUB_RESPONSE_PATH;
 
 public class TranslatorProxy {
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
     private final ProxyNodeJsonClient translatorClient;
+    private final ProxyNodeStreamingClient translatorStreamingClient;
     private final URI translatorUri;
 
     public TranslatorProxy(ProxyNodeJsonClient translatorClient, URI translatorUri) {
+        this(translatorClient, null, translatorUri);
+    }
+
+    /**
+     * With a streaming client, SAML responses are fetched from the translator as raw XML and
+     * Base64-encoded as they arrive, rather than as a Base64 string built by the translator.
+     */
+    public TranslatorProxy(ProxyNodeJsonClient translatorClient, ProxyNodeStreamingClient translatorStreamingClient, URI translatorUri) {
         this.translatorClient = translatorClient;
+        this.translatorStreamingClient = translatorStreamingClient;
         this.translatorUri = translatorUri;
     }
 
@@ -27,7 +46,7 @@ public class TranslatorProxy {
         final URI translateHubResponseUri = UriBuilder.fromUri(translatorUri).path(TRANSLATE_HUB_RESPONSE_PATH).build();
 
         try {
-            return translatorClient.post(translatorRequest, translateHubResponseUri, String.class);
+            return postForEncodedSaml(translatorRequest, translateHubResponseUri);
         } catch (ApplicationException e) {
             throw new TranslatorResponseException(e, sessionId, translatorRequest.getRequestId(), translatorRequest.getEidasRequestId());
         }
@@ -38,9 +57,23 @@ public class TranslatorProxy {
         final URI failureResponseUri = UriBuilder.fromUri(translatorUri).path(GENERATE_FAILURE_RESPONSE_PATH).build();
 
         try {
-            return translatorClient.post(failureResponseGenerationRequest, failureResponseUri, String.class);
+            return postForEncodedSaml(failureResponseGenerationRequest, failureResponseUri);
         } catch (Throwable e) {
             throw new FailureResponseGenerationException(e, failureResponseGenerationRequest.getEidasRequestId());
         }
     }
+
+    private String postForEncodedSaml(Object request, URI uri) {
+        if (translatorStreamingClient == null) {
+            return translatorClient.post(request, uri, String.class);
+        }
+
+        ByteArrayOutputStream encodedSaml = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (OutputStream base64Output = Base64.getEncoder().wrap(encodedSaml)) {
+            translatorStreamingClient.post(request, uri, base64Output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(encodedSaml.toByteArray(), StandardCharsets.US_ASCII);
+    }
 }
@@ -31,6 +31,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import java.net.URI;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 @IngressEgressLogging
 @Path(Urls.GatewayUrls.GATEWAY_ROOT)
@@ -92,7 +94,7 @@ public class EidasAuthnRequestResource {
         REQUESTS.labels(issuerEntityId).inc();
         final AuthnRequestResponse vspResponse = generateHubRequestWithVsp(sessionId);
 
-        sessionStorage.createOrUpdateSession(
+        final CompletionStage<Void> sessionWrite = sessionStorage.createOrUpdateSessionAsync(
             sessionId,
             new GatewaySessionData(
                 eidasSamlParserResponse,
@@ -108,10 +110,24 @@ public class EidasAuthnRequestResource {
         ProxyNodeLogger.addContext(ProxyNodeMDCKey.HUB_URL, vspResponse.getSsoLocation().toString());
         ProxyNodeLogger.info("Authn requests received from ESP and VSP");
         SamlFormView samlFormView = buildSamlFormView(vspResponse, (String) session.getAttribute(ProxyNodeMDCKey.PROXY_NODE_JOURNEY_ID.name()));
+        awaitSessionWrite(sessionWrite);
         REQUESTS_SUCCESSFUL.labels(issuerEntityId).inc();
         return samlFormView;
     }
 
+    // The session must be persisted before the user is sent to the Hub, but the
+    // Redis round-trip can overlap with building the form view
+    private static void awaitSessionWrite(CompletionStage<Void> sessionWrite) {
+        try {
+            sessionWrite.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private EidasSamlParserResponse parseEidasRequest(String encodedEidasAuthnRequest, String sessionId) {
         return eidasSamlParserService.parse(new EidasSamlParserRequest(encodedEidasAuthnRequest), sessionId);
     }
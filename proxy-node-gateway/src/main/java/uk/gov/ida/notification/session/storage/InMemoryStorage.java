@@ -1,25 +1,44 @@
 package uk.gov.ida.notification.session.storage;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import uk.gov.ida.notification.MetricsUtils;
+import uk.gov.ida.notification.configuration.RedisServiceConfiguration;
 import uk.gov.ida.notification.exceptions.SessionAlreadyExistsException;
 import uk.gov.ida.notification.exceptions.SessionMissingException;
 import uk.gov.ida.notification.session.GatewaySessionData;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class InMemoryStorage implements SessionStore {
 
-    private HashMap<String, GatewaySessionData> storage;
+    private final long recordTTL;
+    private final long maxEntries;
+
+    private Cache<String, GatewaySessionData> storage;
+    private Collector storageMetrics;
+
+    public InMemoryStorage(RedisServiceConfiguration redisConfiguration) {
+        this.recordTTL = redisConfiguration.getRecordTTL();
+        this.maxEntries = redisConfiguration.getLocalMaxEntries();
+    }
 
     @Override
     public void addSession(String sessionId, GatewaySessionData sessionData) {
-        if (sessionExists(sessionId)) {
-            GatewaySessionData existingSession = getSession(sessionId);
+        GatewaySessionData existingSession = storage.asMap().putIfAbsent(sessionId, sessionData);
+        if (existingSession != null) {
             String hubRequestId = existingSession.getHubRequestId();
             String eidasRequestId = existingSession.getEidasRequestId();
 
             throw new SessionAlreadyExistsException(sessionId, hubRequestId, eidasRequestId);
         }
-        this.createOrUpdateSession(sessionId, sessionData);
     }
 
     @Override
@@ -29,22 +48,54 @@ public class InMemoryStorage implements SessionStore {
 
     @Override
     public boolean sessionExists(String sessionId) {
-        return storage.containsKey(sessionId);
+        return storage.asMap().containsKey(sessionId);
     }
 
     @Override
     public GatewaySessionData getSession(String sessionId) {
-        if (!sessionExists(sessionId)) throw new SessionMissingException(sessionId);
-        return storage.get(sessionId);
+        GatewaySessionData sessionData = storage.getIfPresent(sessionId);
+        if (sessionData == null) throw new SessionMissingException(sessionId);
+        return sessionData;
     }
 
     @Override
     public void start() {
-        storage = new HashMap<>();
+        // Guava's cache is segmented for concurrent access and evicts the least recently
+        // used entry in a segment once the size bound is reached
+        storage = CacheBuilder.newBuilder()
+                .expireAfterWrite(recordTTL, TimeUnit.SECONDS)
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        storageMetrics = new InMemoryStorageMetrics(storage).register();
     }
 
     @Override
     public void stop() {
+        CollectorRegistry.defaultRegistry.unregister(storageMetrics);
+        storage.invalidateAll();
         storage = null;
     }
+
+    private static class InMemoryStorageMetrics extends Collector {
+
+        private static final String PREFIX = MetricsUtils.LABEL_PREFIX + "_in_memory_sessions";
+
+        private final Cache<String, GatewaySessionData> storage;
+
+        private InMemoryStorageMetrics(Cache<String, GatewaySessionData> storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            CacheStats stats = storage.stats();
+            return Arrays.asList(
+                    new GaugeMetricFamily(PREFIX, "Number of sessions held in the in-memory session store", storage.size()),
+                    new CounterMetricFamily(PREFIX + "_hits_total", "Number of in-memory session store lookups that found a session", stats.hitCount()),
+                    new CounterMetricFamily(PREFIX + "_misses_total", "Number of in-memory session store lookups that found no session", stats.missCount()),
+                    new CounterMetricFamily(PREFIX + "_evictions_total", "Number of sessions evicted from the in-memory session store", stats.evictionCount())
+            );
+        }
+    }
 }
@@ -0,0 +1,231 @@
+package uk.gov.ida.notification.session.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import uk.gov.ida.notification.configuration.RedisServiceConfiguration;
+import uk.gov.ida.notification.configuration.RedisTopologyConfiguration;
+import uk.gov.ida.notification.session.GatewaySessionData;
+import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keeps sessions written by this pod in a bounded local cache in front of {@link RedisStorage},
+ * so the Hub response leg can usually be served without a Redis round-trip.
+ *
+ * Entries are invalidated from Redis keyspace notifications, which must be enabled on the
+ * server with at least {@code notify-keyspace-events Kg$x}; without them nothing would ever be
+ * invalidated, so {@link #start()} refuses to run against a server that has them switched off.
+ * Where the server does not allow {@code CONFIG GET} (as on some managed services) the setting
+ * cannot be checked and a warning is logged instead. Each local write records that one
+ * {@code set} notification for the key is expected; any further {@code set} (i.e. a write from
+ * another pod), deletion or expiry evicts the entry. The local cache is bypassed from the moment
+ * the subscription drops until Redis confirms it has been re-established.
+ */
+public class NearCachedRedisStorage implements SessionStore {
+
+    private static final String SET_EVENT = "set";
+    private static final String EXPIRE_EVENT = "expire";
+    private static final String NOTIFY_KEYSPACE_EVENTS = "notify-keyspace-events";
+
+    private final RedisStorage redisStorage;
+    private final RedisClient pubSubClient;
+    private final String keyspaceChannelPrefix;
+    private final long recordTTL;
+    private final long maxEntries;
+
+    private Cache<String, NearCacheEntry> nearCache;
+    private StatefulRedisPubSubConnection<String, String> pubSubConnection;
+    private volatile boolean subscribed = false;
+
+    public NearCachedRedisStorage(RedisServiceConfiguration redisConfiguration, RedisStorage redisStorage) {
+        this.redisStorage = redisStorage;
+        this.recordTTL = redisConfiguration.getRecordTTL();
+        this.maxEntries = redisConfiguration.getNearCacheMaxEntries();
+
+        RedisTopologyConfiguration topology = redisConfiguration.getTopology();
+        if (topology.getMode() == RedisTopologyConfiguration.Mode.CLUSTER) {
+            // Keyspace notifications are node-local in a cluster, so one subscription would miss invalidations
+            throw new IllegalArgumentException("The session near-cache is not supported with a Redis Cluster topology");
+        }
+
+        RedisURI redisURI = topology.getMasterUri(RedisURI.create(redisConfiguration.getUrl()));
+        this.keyspaceChannelPrefix = "__keyspace@" + redisURI.getDatabase() + "__:";
+        this.pubSubClient = RedisClient.create(redisURI);
+    }
+
+    @Override
+    public void addSession(String sessionId, GatewaySessionData sessionData) {
+        expectOwnWrite(sessionId, sessionData);
+        try {
+            redisStorage.addSession(sessionId, sessionData);
+        } catch (RuntimeException e) {
+            nearCache.invalidate(sessionId);
+            throw e;
+        }
+    }
+
+    @Override
+    public void createOrUpdateSession(String sessionId, GatewaySessionData sessionData) {
+        expectOwnWrite(sessionId, sessionData);
+        try {
+            redisStorage.createOrUpdateSession(sessionId, sessionData);
+        } catch (RuntimeException e) {
+            nearCache.invalidate(sessionId);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> createOrUpdateSessionAsync(String sessionId, GatewaySessionData sessionData) {
+        expectOwnWrite(sessionId, sessionData);
+        return redisStorage.createOrUpdateSessionAsync(sessionId, sessionData)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        nearCache.invalidate(sessionId);
+                    }
+                });
+    }
+
+    @Override
+    public boolean sessionExists(String sessionId) {
+        return getCachedSession(sessionId).isPresent() || redisStorage.sessionExists(sessionId);
+    }
+
+    @Override
+    public GatewaySessionData getSession(String sessionId) {
+        return getCachedSession(sessionId).orElseGet(() -> redisStorage.getSession(sessionId));
+    }
+
+    @Override
+    public void start() {
+        nearCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(recordTTL, TimeUnit.SECONDS)
+                .maximumSize(maxEntries)
+                .build();
+
+        redisStorage.start();
+
+        pubSubClient.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> connection) {
+                // Notifications sent while disconnected are lost, so nothing cached before can be trusted.
+                // The cache stays bypassed until the resubscription is confirmed.
+                nearCache.invalidateAll();
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                subscribed = false;
+                nearCache.invalidateAll();
+            }
+        });
+
+        pubSubConnection = pubSubClient.connectPubSub();
+        verifyKeyspaceNotificationsEnabled();
+        pubSubConnection.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String pattern, String channel, String message) {
+                onKeyspaceEvent(channel.substring(keyspaceChannelPrefix.length()), message);
+            }
+
+            @Override
+            public void psubscribed(String pattern, long count) {
+                nearCache.invalidateAll();
+                subscribed = true;
+            }
+        });
+        pubSubConnection.sync().psubscribe(keyspaceChannelPrefix + "*");
+    }
+
+    @Override
+    public void stop() {
+        subscribed = false;
+        pubSubConnection.close();
+        pubSubClient.shutdown();
+        redisStorage.stop();
+        nearCache.invalidateAll();
+    }
+
+    boolean isSubscribed() {
+        return subscribed;
+    }
+
+    static boolean enablesInvalidationEvents(String notifyKeyspaceEvents) {
+        // "A" is shorthand for every event class, including g, $ and x
+        return notifyKeyspaceEvents.contains("K") && (notifyKeyspaceEvents.contains("A")
+                || (notifyKeyspaceEvents.contains("g") && notifyKeyspaceEvents.contains("$") && notifyKeyspaceEvents.contains("x")));
+    }
+
+    void onKeyspaceEvent(String sessionId, String event) {
+        if (EXPIRE_EVENT.equals(event)) {
+            // SETEX and SET EX emit an expire event alongside the set; a TTL change alone does not stale the data
+            return;
+        }
+        if (SET_EVENT.equals(event)) {
+            nearCache.asMap().computeIfPresent(sessionId, (key, entry) -> entry.consumeExpectedWrite());
+            return;
+        }
+        nearCache.invalidate(sessionId);
+    }
+
+    private void verifyKeyspaceNotificationsEnabled() {
+        List<String> config;
+        try {
+            config = pubSubConnection.sync().configGet(NOTIFY_KEYSPACE_EVENTS);
+        } catch (RedisException e) {
+            ProxyNodeLogger.logException(e, Level.WARNING,
+                    "Could not read notify-keyspace-events; the session near-cache needs it set to at least Kg$x");
+            return;
+        }
+        String notifyKeyspaceEvents = config.size() > 1 ? config.get(1) : "";
+        if (!enablesInvalidationEvents(notifyKeyspaceEvents)) {
+            pubSubConnection.close();
+            pubSubClient.shutdown();
+            redisStorage.stop();
+            throw new IllegalStateException("The session near-cache needs Redis notify-keyspace-events set to at least Kg$x, but it is \""
+                    + notifyKeyspaceEvents + "\"");
+        }
+    }
+
+    private void expectOwnWrite(String sessionId, GatewaySessionData sessionData) {
+        // The entry is cached before the write is issued so that a notification for a later
+        // foreign write can never be overtaken by our own local put
+        nearCache.asMap().compute(sessionId, (key, entry) ->
+                new NearCacheEntry(sessionData, entry == null ? 1 : entry.expectedWrites + 1));
+    }
+
+    private Optional<GatewaySessionData> getCachedSession(String sessionId) {
+        if (!subscribed) {
+            return Optional.empty();
+        }
+        NearCacheEntry entry = nearCache.getIfPresent(sessionId);
+        return entry == null ? Optional.empty() : Optional.of(entry.sessionData);
+    }
+
+    private static class NearCacheEntry {
+
+        private final GatewaySessionData sessionData;
+        private final int expectedWrites;
+
+        private NearCacheEntry(GatewaySessionData sessionData, int expectedWrites) {
+            this.sessionData = sessionData;
+            this.expectedWrites = expectedWrites;
+        }
+
+        private NearCacheEntry consumeExpectedWrite() {
+            return expectedWrites > 0 ? new NearCacheEntry(sessionData, expectedWrites - 1) : null;
+        }
+    }
+}
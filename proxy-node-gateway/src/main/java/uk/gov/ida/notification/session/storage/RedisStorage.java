@@ -1,39 +1,43 @@
 package uk.gov.ida.notification.session.storage;
 
-import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisURI;
-import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
 import uk.gov.ida.notification.configuration.RedisServiceConfiguration;
 import uk.gov.ida.notification.exceptions.SessionAlreadyExistsException;
 import uk.gov.ida.notification.exceptions.SessionMissingException;
 import uk.gov.ida.notification.session.GatewaySessionData;
 
+import java.util.concurrent.CompletionStage;
+
 public class RedisStorage implements SessionStore {
 
     private RedisServiceConfiguration redisConfiguration;
 
-    private RedisClient redisClient;
-    private StatefulRedisConnection<String, GatewaySessionData> redisConnection;
-    private RedisCommands<String, GatewaySessionData> redisCommands;
+    private RedisURI redisURI;
+    private RedisTopologyConnection<GatewaySessionData> redisConnection;
+    private RedisClusterCommands<String, GatewaySessionData> redisCommands;
+    private RedisClusterAsyncCommands<String, GatewaySessionData> redisAsyncCommands;
 
     public RedisStorage(RedisServiceConfiguration redisConfiguration) {
         this.redisConfiguration = redisConfiguration;
 
-        RedisURI redisURI = RedisURI.create(redisConfiguration.getUrl());
-        redisClient = RedisClient.create(redisURI);
+        redisURI = RedisURI.create(redisConfiguration.getUrl());
     }
 
     @Override
     public void addSession(String sessionId, GatewaySessionData sessionData) {
-        if (sessionExists(sessionId)) {
-            GatewaySessionData existingSession = getSession(sessionId);
-            String hubRequestId = existingSession.getHubRequestId();
-            String eidasRequestId = existingSession.getEidasRequestId();
+        // SET NX EX creates the session atomically in a single round-trip; the existing
+        // record is only fetched on the (rare) conflict path to populate the exception
+        String result = redisCommands.set(sessionId, sessionData, SetArgs.Builder.nx().ex(redisConfiguration.getRecordTTL()));
+        if (result == null) {
+            GatewaySessionData existingSession = redisCommands.get(sessionId);
+            String hubRequestId = existingSession != null ? existingSession.getHubRequestId() : null;
+            String eidasRequestId = existingSession != null ? existingSession.getEidasRequestId() : null;
 
             throw new SessionAlreadyExistsException(sessionId, hubRequestId, eidasRequestId);
         }
-        this.createOrUpdateSession(sessionId, sessionData);
     }
 
     @Override
@@ -48,19 +52,27 @@ public class RedisStorage implements SessionStore {
 
     @Override
     public GatewaySessionData getSession(String sessionId) {
-        if (!sessionExists(sessionId)) throw new SessionMissingException(sessionId);
-        return redisCommands.get(sessionId);
+        GatewaySessionData sessionData = redisCommands.get(sessionId);
+        if (sessionData == null) throw new SessionMissingException(sessionId);
+        return sessionData;
+    }
+
+    @Override
+    public CompletionStage<Void> createOrUpdateSessionAsync(String sessionId, GatewaySessionData sessionData) {
+        return redisAsyncCommands
+                .setex(sessionId, redisConfiguration.getRecordTTL(), sessionData)
+                .thenAccept(result -> {});
     }
 
     @Override
     public void start() {
-        redisConnection = redisClient.connect(new SessionRedisCodec());
+        redisConnection = redisConfiguration.getTopology().connectToMaster(redisURI, new SessionRedisCodec(redisConfiguration.getSessionEncoding()));
         redisCommands = redisConnection.sync();
+        redisAsyncCommands = redisConnection.async();
     }
 
     @Override
     public void stop() {
         redisConnection.close();
-        redisClient.shutdown();
     }
 }
@@ -0,0 +1,11 @@
+package uk.gov.ida.notification.session.storage;
+
+/**
+ * Format used when writing {@link uk.gov.ida.notification.session.GatewaySessionData} to Redis.
+ * Both formats are always readable, so the write format can be switched once every pod
+ * in a rollout understands the new one.
+ */
+public enum SessionEncoding {
+    JSON,
+    BINARY
+}
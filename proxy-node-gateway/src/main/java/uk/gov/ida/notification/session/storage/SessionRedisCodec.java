@@ -1,46 +1,162 @@
 package uk.gov.ida.notification.session.storage;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.ToByteBufEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import uk.gov.ida.notification.exceptions.RedisSerializationException;
 import uk.gov.ida.notification.session.GatewaySessionData;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
-public class SessionRedisCodec implements RedisCodec<String, GatewaySessionData> {
+/**
+ * Encodes sessions either as the original JSON document or as a versioned binary record:
+ * a version byte, a flags byte, then each string field as a 4-byte length (-1 for null)
+ * followed by its UTF-8 bytes. Values are written straight into Lettuce's pooled buffers.
+ */
+public class SessionRedisCodec implements RedisCodec<String, GatewaySessionData>, ToByteBufEncoder<String, GatewaySessionData> {
 
-    private ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final byte JSON_OBJECT_START = '{';
+    private static final byte BINARY_VERSION_1 = 1;
+    private static final byte TRANSIENT_PID_REQUESTED = 1;
+    private static final int NULL_LENGTH = -1;
+
+    private final SessionEncoding encoding;
+
+    public SessionRedisCodec() {
+        this(SessionEncoding.JSON);
+    }
+
+    public SessionRedisCodec(SessionEncoding encoding) {
+        this.encoding = encoding;
+    }
 
     @Override
     public String decodeKey(ByteBuffer bytes) {
-        return new String(bytes.array(), StandardCharsets.UTF_8);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
     }
 
     @Override
     public GatewaySessionData decodeValue(ByteBuffer bytes) {
-        try (InputStream inputStream = new ByteBufferBackedInputStream(bytes)) {
-            return objectMapper.readValue(inputStream, GatewaySessionData.class);
-        } catch (IOException e) {
-            throw new RedisSerializationException("Error decoding Gateway session data", e);
+        if (!bytes.hasRemaining()) {
+            throw new RedisSerializationException("Error decoding Gateway session data: empty value");
+        }
+
+        byte format = bytes.get(bytes.position());
+        if (format == JSON_OBJECT_START) {
+            return decodeJson(bytes);
+        }
+        if (format == BINARY_VERSION_1) {
+            return decodeBinary(bytes);
         }
+        throw new RedisSerializationException("Error decoding Gateway session data: unknown format " + format);
     }
 
     @Override
     public ByteBuffer encodeKey(String key) {
-        return ByteBuffer.wrap(key.getBytes());
+        return StandardCharsets.UTF_8.encode(key);
     }
 
     @Override
     public ByteBuffer encodeValue(GatewaySessionData value) {
-        try {
-            return ByteBuffer.wrap(objectMapper.writeValueAsBytes(value));
-        } catch (JsonProcessingException e) {
+        ByteBuf target = Unpooled.buffer(estimateSize(value));
+        encodeValue(value, target);
+        return target.nioBuffer();
+    }
+
+    @Override
+    public void encodeKey(String key, ByteBuf target) {
+        ByteBufUtil.writeUtf8(target, key);
+    }
+
+    @Override
+    public void encodeValue(GatewaySessionData value, ByteBuf target) {
+        if (encoding == SessionEncoding.BINARY) {
+            encodeBinary(value, target);
+        } else {
+            encodeJson(value, target);
+        }
+    }
+
+    @Override
+    public int estimateSize(Object keyOrValue) {
+        if (keyOrValue instanceof String) {
+            return ByteBufUtil.utf8MaxBytes((String) keyOrValue);
+        }
+        return 512;
+    }
+
+    private static GatewaySessionData decodeJson(ByteBuffer bytes) {
+        try (InputStream inputStream = new ByteBufferBackedInputStream(bytes)) {
+            return OBJECT_MAPPER.readValue(inputStream, GatewaySessionData.class);
+        } catch (IOException e) {
+            throw new RedisSerializationException("Error decoding Gateway session data", e);
+        }
+    }
+
+    private static void encodeJson(GatewaySessionData value, ByteBuf target) {
+        try (OutputStream outputStream = new ByteBufOutputStream(target)) {
+            OBJECT_MAPPER.writeValue(outputStream, value);
+        } catch (IOException e) {
             throw new RedisSerializationException("Error encoding Gateway session data", e);
         }
     }
+
+    private static GatewaySessionData decodeBinary(ByteBuffer bytes) {
+        try {
+            bytes.get();
+            boolean transientPidRequested = (bytes.get() & TRANSIENT_PID_REQUESTED) != 0;
+            return new GatewaySessionData(
+                    readString(bytes),
+                    readString(bytes),
+                    readString(bytes),
+                    readString(bytes),
+                    readString(bytes),
+                    transientPidRequested);
+        } catch (RuntimeException e) {
+            throw new RedisSerializationException("Error decoding Gateway session data", e);
+        }
+    }
+
+    private static void encodeBinary(GatewaySessionData value, ByteBuf target) {
+        target.writeByte(BINARY_VERSION_1);
+        target.writeByte(value.isTransientPidRequested() ? TRANSIENT_PID_REQUESTED : 0);
+        writeString(value.getHubRequestId(), target);
+        writeString(value.getEidasRequestId(), target);
+        writeString(value.getEidasDestination(), target);
+        writeString(value.getEidasRelayState(), target);
+        writeString(value.getEidasIssuerEntityId(), target);
+    }
+
+    private static String readString(ByteBuffer bytes) {
+        int length = bytes.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        ByteBuffer field = bytes.slice();
+        field.limit(length);
+        bytes.position(bytes.position() + length);
+        return StandardCharsets.UTF_8.decode(field).toString();
+    }
+
+    private static void writeString(String value, ByteBuf target) {
+        if (value == null) {
+            target.writeInt(NULL_LENGTH);
+            return;
+        }
+        int lengthIndex = target.writerIndex();
+        target.writeInt(0);
+        int length = ByteBufUtil.writeUtf8(target, value);
+        target.setInt(lengthIndex, length);
+    }
 }
@@ -3,10 +3,22 @@ package uk.gov.ida.notification.session.storage;
 import io.dropwizard.lifecycle.Managed;
 import uk.gov.ida.notification.session.GatewaySessionData;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface SessionStore extends Managed {
 
     void addSession(String sessionId, GatewaySessionData sessionData);
     void createOrUpdateSession(String sessionId, GatewaySessionData sessionData);
     boolean sessionExists(String sessionId);
     GatewaySessionData getSession(String sessionId);
+
+    /**
+     * Non-blocking variant of {@link #createOrUpdateSession}. Stores without a
+     * native async client complete the returned stage before returning.
+     */
+    default CompletionStage<Void> createOrUpdateSessionAsync(String sessionId, GatewaySessionData sessionData) {
+        createOrUpdateSession(sessionId, sessionData);
+        return CompletableFuture.completedFuture(null);
+    }
 }
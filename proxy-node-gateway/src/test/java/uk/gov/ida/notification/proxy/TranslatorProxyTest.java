@@ -1,6 +1,7 @@
 package uk.gov.ida.notification.proxy;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jersey.errors.ErrorMessage;
 import io.dropwizard.testing.junit.DropwizardClientRule;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -8,6 +9,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.slf4j.MDC;
+import uk.gov.ida.common.ExceptionType;
+import uk.gov.ida.exceptions.ApplicationException;
 import uk.gov.ida.jerseyclient.ErrorHandlingClient;
 import uk.gov.ida.jerseyclient.JsonResponseProcessor;
 import uk.gov.ida.notification.contracts.HubResponseTranslatorRequest;
@@ -15,6 +18,7 @@ import uk.gov.ida.notification.exceptions.TranslatorResponseException;
 import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
 import uk.gov.ida.notification.shared.logging.ProxyNodeMDCKey;
 import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
+import uk.gov.ida.notification.shared.proxy.ProxyNodeStreamingClient;
 
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -26,7 +30,9 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.Base64;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -49,6 +55,14 @@ public class TranslatorProxyTest {
             new IstioHeaderStorage()
     );
 
+    private static final ProxyNodeStreamingClient streamingClient = new ProxyNodeStreamingClient(
+            ClientBuilder.newClient(),
+            new ObjectMapper(),
+            new IstioHeaderStorage()
+    );
+
+    private static final String SAML_RESPONSE_XML = "<saml2p:Response>translated</saml2p:Response>";
+
     @Path(TRANSLATOR_ROOT)
     @Produces(MediaType.APPLICATION_JSON)
     public static class TestTranslatorResource {
@@ -66,6 +80,22 @@ public class TranslatorProxyTest {
             return Response.serverError().build();
         }
 
+        @Path("/bad-request" + TRANSLATE_HUB_RESPONSE_PATH)
+        @POST
+        public Response testBadRequestTranslate(HubResponseTranslatorRequest request) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON_TYPE)
+                    .entity(new ErrorMessage(Response.Status.BAD_REQUEST.getStatusCode(), "Hub response could not be decrypted"))
+                    .build();
+        }
+
+        @Path("/streaming" + TRANSLATE_HUB_RESPONSE_PATH)
+        @POST
+        @Produces(MediaType.APPLICATION_OCTET_STREAM)
+        public Response testStreamingTranslate(HubResponseTranslatorRequest request) {
+            return Response.ok(SAML_RESPONSE_XML.getBytes(StandardCharsets.UTF_8)).build();
+        }
+
         @POST
         @Path("/test-journey-id-header" + TRANSLATE_HUB_RESPONSE_PATH)
         public Response testJourneyIdHeader(HubResponseTranslatorRequest hubResponseTranslatorRequest, @Context HttpHeaders headers) {
@@ -102,6 +132,77 @@ public class TranslatorProxyTest {
         );
     }
 
+    @Test
+    public void shouldBase64EncodeStreamedSamlResponse() {
+        final HubResponseTranslatorRequest request = new HubResponseTranslatorRequest(
+                "hub_response",
+                "requestid",
+                "eidas_request_id",
+                "level_of_assurance",
+                UriBuilder.fromUri("http://connector.node").build(),
+                UriBuilder.fromUri("http://connector.node/ConnectorMetadata").build(),
+                false
+        );
+
+        final TranslatorProxy translatorProxy = new TranslatorProxy(
+                jsonClient,
+                streamingClient,
+                UriBuilder.fromUri(clientRule.baseUri()).path(TRANSLATOR_ROOT).path("/streaming").build()
+        );
+
+        final String samlResponse = translatorProxy.getTranslatedHubResponse(request, "session-id");
+
+        assertThat(samlResponse).isEqualTo(Base64.getEncoder().encodeToString(SAML_RESPONSE_XML.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void shouldThrowTranslatorResponseExceptionWhenErrorStreamingFromTranslator() {
+        final HubResponseTranslatorRequest request = new HubResponseTranslatorRequest(
+                "hub_response",
+                "requestid",
+                "eidas_request_id",
+                "level_of_assurance",
+                UriBuilder.fromUri("http://connector.node").build(),
+                UriBuilder.fromUri("http://connector.node/ConnectorMetadata").build(),
+                false
+        );
+
+        final TranslatorProxy translatorProxy = new TranslatorProxy(
+                jsonClient,
+                streamingClient,
+                UriBuilder.fromUri(clientRule.baseUri()).path(TRANSLATOR_ROOT).path("/server-error").build()
+        );
+
+        assertThatThrownBy(() -> translatorProxy.getTranslatedHubResponse(request, "session-id"))
+                .isInstanceOf(TranslatorResponseException.class);
+    }
+
+    @Test
+    public void shouldKeepTheTranslatorErrorMessageWhenStreamingFails() {
+        final HubResponseTranslatorRequest request = new HubResponseTranslatorRequest(
+                "hub_response",
+                "requestid",
+                "eidas_request_id",
+                "level_of_assurance",
+                UriBuilder.fromUri("http://connector.node").build(),
+                UriBuilder.fromUri("http://connector.node/ConnectorMetadata").build(),
+                false
+        );
+
+        final TranslatorProxy translatorProxy = new TranslatorProxy(
+                jsonClient,
+                streamingClient,
+                UriBuilder.fromUri(clientRule.baseUri()).path(TRANSLATOR_ROOT).path("/bad-request").build()
+        );
+
+        assertThatThrownBy(() -> translatorProxy.getTranslatedHubResponse(request, "session-id"))
+                .isInstanceOfSatisfying(TranslatorResponseException.class, e -> {
+                    assertThat(e.getCause()).isInstanceOf(ApplicationException.class);
+                    assertThat(((ApplicationException) e.getCause()).getExceptionType()).isEqualTo(ExceptionType.CLIENT_ERROR);
+                    assertThat(e.getCause().getCause()).hasMessage("Hub response could not be decrypted");
+                });
+    }
+
     @Test
     public void shouldThrowTranslatorResponseExceptionWhenErrorPostingToTranslator() {
         final HubResponseTranslatorRequest request = new HubResponseTranslatorRequest(
@@ -31,6 +31,7 @@ import java.lang.reflect.Modifier;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -125,13 +126,14 @@ public class EidasAuthnRequestResourceTest {
         when(vspResponse.getSsoLocation()).thenReturn(new URI("http://hub.bub"));
         when(vspResponse.getSamlRequest()).thenReturn(SAMPLE_HUB_SAML_AUTHN_REQUEST);
         when(session.getId()).thenReturn("some session id");
+        when(sessionStore.createOrUpdateSessionAsync(eq("some session id"), any(GatewaySessionData.class))).thenReturn(CompletableFuture.completedFuture(null));
         when(session.getAttribute(ProxyNodeMDCKey.PROXY_NODE_JOURNEY_ID.name())).thenReturn("journey id");
     }
 
     private void verifyHappyPath() {
         final String sessionId = "some session id";
 
-        verify(sessionStore).createOrUpdateSession(eq(sessionId), any(GatewaySessionData.class));
+        verify(sessionStore).createOrUpdateSessionAsync(eq(sessionId), any(GatewaySessionData.class));
         verify(session).getId();
 
         verify(appender).doAppend(captorILoggingEvent.capture());
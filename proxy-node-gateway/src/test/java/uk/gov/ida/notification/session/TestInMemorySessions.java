@@ -0,0 +1,90 @@
+package uk.gov.ida.notification.session;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.ida.notification.configuration.RedisServiceConfiguration;
+import uk.gov.ida.notification.exceptions.SessionAlreadyExistsException;
+import uk.gov.ida.notification.exceptions.SessionMissingException;
+import uk.gov.ida.notification.session.storage.InMemoryStorage;
+import uk.gov.ida.notification.session.storage.SessionStore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestInMemorySessions {
+
+    private static final String TEST_KEY = "TEST_KEY";
+    private static final String OTHER_TEST_KEY = "OTHER_TEST_KEY";
+    private static final GatewaySessionData TEST_DATA = populateTestData();
+
+    @Mock
+    private static RedisServiceConfiguration redisServiceConfiguration;
+
+    private SessionStore sessionStore = null;
+
+    @Before
+    public void before() {
+        when(redisServiceConfiguration.getRecordTTL()).thenReturn(Long.valueOf(1000));
+        when(redisServiceConfiguration.getLocalMaxEntries()).thenReturn(Long.valueOf(1));
+
+        sessionStore = new InMemoryStorage(redisServiceConfiguration);
+        sessionStore.start();
+    }
+
+    @After
+    public void after() {
+        sessionStore.stop();
+    }
+
+    @Test
+    public void addSessionAndRetrieve() {
+        sessionStore.addSession(TEST_KEY, TEST_DATA);
+
+        GatewaySessionData session = sessionStore.getSession(TEST_KEY);
+
+        assertThat(session).isEqualToComparingFieldByField(TEST_DATA);
+    }
+
+    @Test
+    public void testContainsFunction() {
+        assertThat(sessionStore.sessionExists(TEST_KEY)).isFalse();
+
+        sessionStore.addSession(TEST_KEY, TEST_DATA);
+
+        assertThat(sessionStore.sessionExists(TEST_KEY)).isTrue();
+    }
+
+    @Test(expected = SessionAlreadyExistsException.class)
+    public void addSessionAlreadyExistsWithKey() {
+        sessionStore.addSession(TEST_KEY, TEST_DATA);
+        sessionStore.addSession(TEST_KEY, TEST_DATA);
+    }
+
+    @Test(expected = SessionMissingException.class)
+    public void getSessionButNoKeyExists() {
+        sessionStore.getSession(TEST_KEY);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSessionWhenFull() {
+        sessionStore.addSession(TEST_KEY, TEST_DATA);
+        sessionStore.addSession(OTHER_TEST_KEY, TEST_DATA);
+
+        assertThat(sessionStore.sessionExists(TEST_KEY)).isFalse();
+        assertThat(sessionStore.sessionExists(OTHER_TEST_KEY)).isTrue();
+    }
+
+    private static GatewaySessionData populateTestData() {
+        return new GatewaySessionData("aHubRequestId",
+                "anEidasRequestId",
+                "anEidasDestination",
+                "anEidasRelayState",
+                "eidasIssuer",
+                false);
+    }
+}
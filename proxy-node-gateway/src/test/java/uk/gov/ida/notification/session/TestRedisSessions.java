@@ -8,14 +8,17 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.ida.notification.configuration.RedisServiceConfiguration;
+import uk.gov.ida.notification.configuration.RedisTopologyConfiguration;
 import uk.gov.ida.notification.exceptions.SessionAlreadyExistsException;
 import uk.gov.ida.notification.exceptions.SessionMissingException;
 import uk.gov.ida.notification.session.storage.RedisStorage;
+import uk.gov.ida.notification.session.storage.SessionEncoding;
 import uk.gov.ida.notification.session.storage.SessionStore;
 
 import java.net.URI;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -39,6 +42,8 @@ public class TestRedisSessions {
 
         when(redisServiceConfiguration.getUrl()).thenReturn(redisURI);
         when(redisServiceConfiguration.getRecordTTL()).thenReturn(Long.valueOf(1000));
+        when(redisServiceConfiguration.getSessionEncoding()).thenReturn(SessionEncoding.BINARY);
+        when(redisServiceConfiguration.getTopology()).thenReturn(new RedisTopologyConfiguration());
 
         sessionStore = new RedisStorage(redisServiceConfiguration);
         sessionStore.start();
@@ -75,6 +80,29 @@ public class TestRedisSessions {
         sessionStore.addSession(TEST_KEY, TEST_DATA);
     }
 
+    @Test
+    public void addSessionAlreadyExistsDoesNotOverwriteExistingSession() {
+        GatewaySessionData otherData = new GatewaySessionData("anotherHubRequestId",
+                "anotherEidasRequestId",
+                "anotherEidasDestination",
+                "anotherEidasRelayState",
+                "anotherEidasIssuer",
+                true);
+        sessionStore.addSession(TEST_KEY, TEST_DATA);
+
+        assertThatThrownBy(() -> sessionStore.addSession(TEST_KEY, otherData))
+                .isInstanceOf(SessionAlreadyExistsException.class);
+
+        assertThat(sessionStore.getSession(TEST_KEY)).isEqualToComparingFieldByField(TEST_DATA);
+    }
+
+    @Test
+    public void createSessionAsyncAndRetrieve() {
+        sessionStore.createOrUpdateSessionAsync(TEST_KEY, TEST_DATA).toCompletableFuture().join();
+
+        assertThat(sessionStore.getSession(TEST_KEY)).isEqualToComparingFieldByField(TEST_DATA);
+    }
+
     @Test(expected = SessionMissingException.class)
     public void getSessionButNoKeyExists() {
         sessionStore.getSession(TEST_KEY);
@@ -0,0 +1,78 @@
+package uk.gov.ida.notification.session;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import uk.gov.ida.notification.exceptions.RedisSerializationException;
+import uk.gov.ida.notification.session.storage.SessionEncoding;
+import uk.gov.ida.notification.session.storage.SessionRedisCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSessionRedisCodec {
+
+    private static final GatewaySessionData TEST_DATA = new GatewaySessionData("aHubRequestId",
+            "anEidasRequestId",
+            "anEidasDestination",
+            null,
+            "eidasIssuer",
+            true);
+
+    private final SessionRedisCodec jsonCodec = new SessionRedisCodec(SessionEncoding.JSON);
+    private final SessionRedisCodec binaryCodec = new SessionRedisCodec(SessionEncoding.BINARY);
+
+    @Test
+    public void binaryEncodingRoundTrips() {
+        GatewaySessionData decoded = binaryCodec.decodeValue(binaryCodec.encodeValue(TEST_DATA));
+
+        assertThat(decoded).isEqualToComparingFieldByField(TEST_DATA);
+    }
+
+    @Test
+    public void binaryEncodingIsSmallerThanJson() {
+        assertThat(binaryCodec.encodeValue(TEST_DATA).remaining())
+                .isLessThan(jsonCodec.encodeValue(TEST_DATA).remaining());
+    }
+
+    @Test
+    public void binaryCodecReadsJsonWrittenByEarlierVersions() {
+        GatewaySessionData decoded = binaryCodec.decodeValue(jsonCodec.encodeValue(TEST_DATA));
+
+        assertThat(decoded).isEqualToComparingFieldByField(TEST_DATA);
+    }
+
+    @Test
+    public void jsonCodecReadsBinary() {
+        GatewaySessionData decoded = jsonCodec.decodeValue(binaryCodec.encodeValue(TEST_DATA));
+
+        assertThat(decoded).isEqualToComparingFieldByField(TEST_DATA);
+    }
+
+    @Test
+    public void decodesValuesFromDirectBuffers() {
+        ByteBuf target = Unpooled.directBuffer();
+        binaryCodec.encodeValue(TEST_DATA, target);
+
+        GatewaySessionData decoded = binaryCodec.decodeValue(target.nioBuffer());
+
+        assertThat(decoded).isEqualToComparingFieldByField(TEST_DATA);
+        target.release();
+    }
+
+    @Test
+    public void decodesKeysFromDirectBuffers() {
+        byte[] key = "a-session-id".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(key.length);
+        direct.put(key).flip();
+
+        assertThat(binaryCodec.decodeKey(direct)).isEqualTo("a-session-id");
+    }
+
+    @Test(expected = RedisSerializationException.class)
+    public void rejectsUnknownFormat() {
+        binaryCodec.decodeValue(ByteBuffer.wrap(new byte[] { 99 }));
+    }
+}
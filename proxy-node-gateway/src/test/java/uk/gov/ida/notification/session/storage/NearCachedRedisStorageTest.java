@@ -0,0 +1,187 @@
+package uk.gov.ida.notification.session.storage;
+
+import io.lettuce.core.KillArgs;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+import uk.gov.ida.notification.configuration.RedisServiceConfiguration;
+import uk.gov.ida.notification.configuration.RedisTopologyConfiguration;
+import uk.gov.ida.notification.session.GatewaySessionData;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NearCachedRedisStorageTest {
+
+    private static final String SESSION_ID = "session-id";
+    private static final GatewaySessionData SESSION = sessionData("hub-request-id");
+    private static final GatewaySessionData OTHER_SESSION = sessionData("other-hub-request-id");
+
+    private static RedisServer redisServer;
+    private static URI redisUri;
+    private static RedisClient redisClient;
+
+    private StatefulRedisConnection<String, String> connection;
+    private RedisServiceConfiguration redisConfiguration;
+    private NearCachedRedisStorage nearCachedStorage;
+    private RedisStorage otherPodStorage;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        redisUri = URI.create("redis://localhost:" + port);
+        redisClient = RedisClient.create(redisUri.toString());
+    }
+
+    @AfterClass
+    public static void stopRedis() {
+        redisClient.shutdown();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() {
+        connection = redisClient.connect();
+        connection.sync().flushall();
+        connection.sync().configSet("notify-keyspace-events", "Kg$x");
+
+        redisConfiguration = mock(RedisServiceConfiguration.class);
+        when(redisConfiguration.getUrl()).thenReturn(redisUri);
+        when(redisConfiguration.getRecordTTL()).thenReturn(1000L);
+        when(redisConfiguration.getSessionEncoding()).thenReturn(SessionEncoding.BINARY);
+        when(redisConfiguration.getTopology()).thenReturn(new RedisTopologyConfiguration());
+        when(redisConfiguration.getNearCacheMaxEntries()).thenReturn(100L);
+
+        otherPodStorage = new RedisStorage(redisConfiguration);
+        otherPodStorage.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (nearCachedStorage != null) {
+            nearCachedStorage.stop();
+        }
+        otherPodStorage.stop();
+        connection.close();
+    }
+
+    @Test
+    public void shouldServeOwnWritesFromNearCache() throws Exception {
+        startNearCachedStorage();
+
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, SESSION);
+
+        assertThat(nearCachedStorage.getSession(SESSION_ID)).isSameAs(SESSION);
+    }
+
+    @Test
+    public void shouldKeepEntryWhenOnlyOwnWriteNotificationsArrive() throws Exception {
+        startNearCachedStorage();
+
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, OTHER_SESSION);
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, SESSION);
+        // A marker written after our own writes; once its notification is seen, ours have been processed too
+        nearCachedStorage.createOrUpdateSession("marker", SESSION);
+        otherPodStorage.createOrUpdateSession("marker", OTHER_SESSION);
+        awaitTrue(() -> nearCachedStorage.getSession("marker") != SESSION);
+
+        assertThat(nearCachedStorage.getSession(SESSION_ID)).isSameAs(SESSION);
+    }
+
+    @Test
+    public void shouldInvalidateEntryWrittenByAnotherPod() throws Exception {
+        startNearCachedStorage();
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, SESSION);
+
+        otherPodStorage.createOrUpdateSession(SESSION_ID, OTHER_SESSION);
+
+        awaitTrue(() -> nearCachedStorage.getSession(SESSION_ID) != SESSION);
+        assertThat(nearCachedStorage.getSession(SESSION_ID)).isEqualToComparingFieldByField(OTHER_SESSION);
+    }
+
+    @Test
+    public void shouldInvalidateDeletedEntry() throws Exception {
+        startNearCachedStorage();
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, SESSION);
+
+        connection.sync().del(SESSION_ID);
+
+        awaitTrue(() -> !nearCachedStorage.sessionExists(SESSION_ID));
+    }
+
+    @Test
+    public void shouldBypassAndClearNearCacheUntilResubscribed() throws Exception {
+        startNearCachedStorage();
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, SESSION);
+
+        connection.sync().clientKill(KillArgs.Builder.typePubsub());
+
+        awaitTrue(() -> nearCachedStorage.getSession(SESSION_ID) != SESSION);
+        awaitTrue(nearCachedStorage::isSubscribed);
+        assertThat(nearCachedStorage.getSession(SESSION_ID)).isNotSameAs(SESSION);
+
+        nearCachedStorage.createOrUpdateSession(SESSION_ID, OTHER_SESSION);
+        assertThat(nearCachedStorage.getSession(SESSION_ID)).isSameAs(OTHER_SESSION);
+    }
+
+    @Test
+    public void shouldRefuseToStartWithoutKeyspaceNotifications() {
+        connection.sync().configSet("notify-keyspace-events", "");
+        NearCachedRedisStorage storage = new NearCachedRedisStorage(redisConfiguration, new RedisStorage(redisConfiguration));
+
+        assertThatThrownBy(storage::start)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("notify-keyspace-events");
+    }
+
+    @Test
+    public void shouldRecogniseSufficientKeyspaceEventSettings() {
+        assertThat(NearCachedRedisStorage.enablesInvalidationEvents("Kg$x")).isTrue();
+        assertThat(NearCachedRedisStorage.enablesInvalidationEvents("xKE$g")).isTrue();
+        assertThat(NearCachedRedisStorage.enablesInvalidationEvents("KA")).isTrue();
+        assertThat(NearCachedRedisStorage.enablesInvalidationEvents("EA")).isFalse();
+        assertThat(NearCachedRedisStorage.enablesInvalidationEvents("K$x")).isFalse();
+        assertThat(NearCachedRedisStorage.enablesInvalidationEvents("")).isFalse();
+    }
+
+    private void startNearCachedStorage() throws InterruptedException {
+        nearCachedStorage = new NearCachedRedisStorage(redisConfiguration, new RedisStorage(redisConfiguration));
+        nearCachedStorage.start();
+        awaitTrue(nearCachedStorage::isSubscribed);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 5 seconds").isLessThan(deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static GatewaySessionData sessionData(String hubRequestId) {
+        return new GatewaySessionData(hubRequestId,
+                "anEidasRequestId",
+                "anEidasDestination",
+                "anEidasRelayState",
+                "eidasIssuer",
+                false);
+    }
+}
@@ -1,6 +1,5 @@
 package uk.gov.ida.notification;
 
-import org.glassfish.jersey.internal.util.Base64;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.opensaml.saml.saml2.core.Response;
 import uk.gov.ida.notification.saml.SamlFormMessageType;
@@ -11,8 +10,7 @@ public class SamlFormViewBuilder {
     private SamlObjectMarshaller marshaller = new SamlObjectMarshaller();
 
     public SamlFormView buildRequest(String url, AuthnRequest authnRequest, String relayState) {
-        String samlMessage = marshaller.transformToString(authnRequest);
-        String encodedSamlMessage = Base64.encodeAsString(samlMessage);
+        String encodedSamlMessage = marshaller.transformToBase64(authnRequest);
         return buildRequest(url, encodedSamlMessage, relayState);
     }
 
@@ -21,8 +19,7 @@ public class SamlFormViewBuilder {
     }
 
     public SamlFormView buildResponse(String url, Response response, String relayState) {
-        String samlMessage = marshaller.transformToString(response);
-        String encodedSamlMessage = Base64.encodeAsString(samlMessage);
+        String encodedSamlMessage = marshaller.transformToBase64(response);
         return buildResponse(url, encodedSamlMessage, relayState);
     }
 
@@ -3,18 +3,24 @@ package uk.gov.ida.notification.configuration;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Strings;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.security.x509.X509Support;
 import uk.gov.ida.common.shared.configuration.DeserializablePublicKeyConfiguration;
+import uk.gov.ida.notification.saml.HsmKeyPool;
+import uk.gov.ida.notification.saml.SignatureCreator;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
 
+import java.lang.reflect.Method;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.Security;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static java.text.MessageFormat.format;
@@ -23,10 +29,19 @@ import static java.text.MessageFormat.format;
 public class CloudHsmCredentialConfiguration extends CredentialConfiguration {
     public static final String ID = "CloudHsmCredentialConfiguration";
 
+    private static final int DEFAULT_KEY_POOL_SIZE = 4;
+    private static final long DEFAULT_LIVENESS_PROBE_INTERVAL_SECONDS = 30;
+
+    private final HsmKeyPool hsmKeyPool;
+    private final Method caviumKeyHandle;
+
     @JsonCreator
     public CloudHsmCredentialConfiguration(
             @JsonProperty("publicKey") DeserializablePublicKeyConfiguration publicKey,
-            @JsonProperty("hsmKeyLabel") String hsmKeyLabel
+            @JsonProperty("hsmKeyLabel") String hsmKeyLabel,
+            @JsonProperty("hsmFailoverKeyLabel") String hsmFailoverKeyLabel,
+            @JsonProperty("hsmKeyPoolSize") Integer hsmKeyPoolSize,
+            @JsonProperty("hsmLivenessProbeIntervalSeconds") Long hsmLivenessProbeIntervalSeconds
     ) throws CredentialConfigurationException {
         try {
             ProxyNodeLogger.info(format("Using CloudHsmCredentialConfiguration to sign eIDAS responses with HSM Key Label {0}", hsmKeyLabel));
@@ -41,18 +56,25 @@ public class CloudHsmCredentialConfiguration extends CredentialConfiguration {
                     .newInstance();
             Security.addProvider(caviumProvider);
             JCEMapper.setProviderId("Cavium");
-            KeyStore cloudHsmStore = KeyStore.getInstance("Cavium");
-            cloudHsmStore.load(null, null);
 
-            final Key key = cloudHsmStore.getKey(hsmKeyLabel, null);
-            BasicX509Credential credential = new BasicX509Credential(
+            List<String> keyLabels = new ArrayList<>(List.of(hsmKeyLabel));
+            if (!Strings.isNullOrEmpty(hsmFailoverKeyLabel)) {
+                keyLabels.add(hsmFailoverKeyLabel);
+            }
+            this.hsmKeyPool = new HsmKeyPool(
+                    CloudHsmCredentialConfiguration::loadCaviumKey,
                     certificate,
-                    (PrivateKey) key);
+                    keyLabels,
+                    Optional.ofNullable(hsmKeyPoolSize).orElse(DEFAULT_KEY_POOL_SIZE),
+                    Optional.ofNullable(hsmLivenessProbeIntervalSeconds).orElse(DEFAULT_LIVENESS_PROBE_INTERVAL_SECONDS));
+            hsmKeyPool.connect();
+
+            final PrivateKey key = hsmKeyPool.getActiveKey();
+            BasicX509Credential credential = new BasicX509Credential(certificate, key);
 
-            this.keyHandle = (Long) ClassLoader.getSystemClassLoader()
+            this.caviumKeyHandle = ClassLoader.getSystemClassLoader()
                     .loadClass("com.cavium.key.CaviumKey")
-                    .getMethod("getHandle")
-                    .invoke(key);
+                    .getMethod("getHandle");
 
             credential.setEntityId(ID);
             setCredential(credential);
@@ -60,4 +82,33 @@ public class CloudHsmCredentialConfiguration extends CredentialConfiguration {
             throw new CredentialConfigurationException(e);
         }
     }
+
+    /**
+     * The handle of the key the pool is currently signing with, which changes when the pool
+     * reconnects or fails over to another key label.
+     */
+    @Override
+    public Long getKeyHandle() {
+        PrivateKey key = hsmKeyPool.getActiveKey();
+        if (key == null) {
+            return null;
+        }
+        try {
+            return (Long) caviumKeyHandle.invoke(key);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public SignatureCreator getSignatureCreator() {
+        return hsmKeyPool;
+    }
+
+    private static PrivateKey loadCaviumKey(String keyLabel) throws Exception {
+        KeyStore cloudHsmStore = KeyStore.getInstance("Cavium");
+        cloudHsmStore.load(null, null);
+        final Key key = cloudHsmStore.getKey(keyLabel, null);
+        return (PrivateKey) key;
+    }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import org.apache.xml.security.signature.XMLSignature;
 import org.opensaml.security.x509.BasicX509Credential;
+import uk.gov.ida.notification.saml.SignatureCreator;
 
 import java.security.interfaces.ECPublicKey;
 
@@ -18,7 +19,6 @@ import java.security.interfaces.ECPublicKey;
 public abstract class CredentialConfiguration {
     protected BasicX509Credential credential;
     protected String algorithm;
-    protected Long keyHandle;
 
     public BasicX509Credential getCredential() { return credential; }
     public String getAlgorithm() { return algorithm; }
@@ -32,6 +32,10 @@ public abstract class CredentialConfiguration {
     }
 
     public Long getKeyHandle() {
-        return this.keyHandle;
+        return null;
+    }
+
+    public SignatureCreator getSignatureCreator() {
+        return SignatureCreator.DIRECT;
     }
 }
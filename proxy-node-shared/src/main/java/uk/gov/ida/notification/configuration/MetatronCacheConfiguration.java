@@ -0,0 +1,102 @@
+package uk.gov.ida.notification.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.client.JerseyClientConfiguration;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import uk.gov.ida.jerseyclient.ErrorHandlingClient;
+import uk.gov.ida.jerseyclient.JsonResponseProcessor;
+import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
+import uk.gov.ida.notification.shared.proxy.CachingMetatronProxy;
+import uk.gov.ida.notification.shared.proxy.MetatronChangeWatcher;
+import uk.gov.ida.notification.shared.proxy.MetatronProxy;
+import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.client.Client;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+
+public class MetatronCacheConfiguration {
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Boolean enabled = true;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long refreshAfterSeconds = 60L;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long expireAfterSeconds = 600L;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long maxEntries = 1000L;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Boolean watchChanges = false;
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public Long getRefreshAfterSeconds() {
+        return refreshAfterSeconds;
+    }
+
+    public Long getExpireAfterSeconds() {
+        return expireAfterSeconds;
+    }
+
+    public Long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Boolean isWatchChanges() {
+        return watchChanges;
+    }
+
+    public MetatronProxy buildMetatronProxy(URI metatronUri, Environment environment) {
+        ProxyNodeJsonClient metatronClient = buildMetatronClient(environment, new JerseyClientConfiguration(), "metatron-client");
+        if (!enabled) {
+            return new MetatronProxy(metatronUri, metatronClient);
+        }
+
+        ExecutorService refreshExecutor = environment.lifecycle()
+                .executorService("metatron-cache-refresh-%d")
+                .minThreads(2)
+                .maxThreads(2)
+                .build();
+        CachingMetatronProxy cachingMetatronProxy = new CachingMetatronProxy(metatronUri, metatronClient, this, refreshExecutor);
+        if (watchChanges) {
+            JerseyClientConfiguration watcherClientConfig = new JerseyClientConfiguration();
+            watcherClientConfig.setTimeout(Duration.seconds(MetatronChangeWatcher.WAIT_SECONDS + 15));
+            ProxyNodeJsonClient watcherClient = buildMetatronClient(environment, watcherClientConfig, "metatron-change-watcher-client");
+            environment.lifecycle().manage(new MetatronChangeWatcher(metatronUri, watcherClient, cachingMetatronProxy));
+        }
+        return cachingMetatronProxy;
+    }
+
+    private static ProxyNodeJsonClient buildMetatronClient(Environment environment, JerseyClientConfiguration clientConfig, String name) {
+        Client client = new JerseyClientBuilder(environment).using(clientConfig).build(name);
+        return new ProxyNodeJsonClient(
+                new ErrorHandlingClient(client),
+                new JsonResponseProcessor(environment.getObjectMapper()),
+                new IstioHeaderStorage()
+        );
+    }
+}
@@ -0,0 +1,145 @@
+package uk.gov.ida.notification.configuration;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.validation.ValidationMethod;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.masterslave.MasterSlave;
+import io.lettuce.core.masterslave.StatefulRedisMasterSlaveConnection;
+import uk.gov.ida.notification.session.storage.RedisTopologyConnection;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * How to reach Redis beyond a single standalone node.
+ *
+ * STANDALONE connects to the configured url; any {@code nodes} are treated as static read replicas.
+ * SENTINEL treats {@code nodes} as sentinels monitoring {@code sentinelMasterId}.
+ * CLUSTER treats {@code nodes} (or the url if none are given) as cluster seed nodes.
+ *
+ * {@code readFrom} lets reads go to replicas, which may lag behind the master. Callers that must
+ * see their own writes, such as session storage, connect with {@link #connectToMaster} instead.
+ */
+public class RedisTopologyConfiguration {
+
+    public enum Mode {
+        STANDALONE,
+        SENTINEL,
+        CLUSTER
+    }
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Mode mode = Mode.STANDALONE;
+
+    @Valid
+    @JsonProperty
+    private List<URI> nodes = new ArrayList<>();
+
+    @Valid
+    @JsonProperty
+    private String sentinelMasterId;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private String readFrom = "master";
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public RedisTopologyConnection<String> connect(RedisURI url) {
+        return connect(url, StringCodec.UTF8);
+    }
+
+    public <V> RedisTopologyConnection<V> connect(RedisURI url, RedisCodec<String, V> codec) {
+        return connect(url, codec, ReadFrom.valueOf(readFrom));
+    }
+
+    /**
+     * Connects with every read going to the master, whatever {@code readFrom} says, so a read
+     * that follows a write always sees it.
+     */
+    public <V> RedisTopologyConnection<V> connectToMaster(RedisURI url, RedisCodec<String, V> codec) {
+        return connect(url, codec, ReadFrom.MASTER);
+    }
+
+    @ValidationMethod(message = "SENTINEL mode needs at least one sentinel in nodes and a sentinelMasterId")
+    @JsonIgnore
+    public boolean isSentinelConfigured() {
+        return mode != Mode.SENTINEL || (!nodes.isEmpty() && sentinelMasterId != null && !sentinelMasterId.isBlank());
+    }
+
+    @ValidationMethod(message = "readFrom must be one of master, masterPreferred, slave, slavePreferred or nearest")
+    @JsonIgnore
+    public boolean isReadFromValid() {
+        try {
+            ReadFrom.valueOf(readFrom);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private <V> RedisTopologyConnection<V> connect(RedisURI url, RedisCodec<String, V> codec, ReadFrom readFromSetting) {
+        if (mode == Mode.CLUSTER) {
+            RedisClusterClient clusterClient = RedisClusterClient.create(seedUris(url));
+            StatefulRedisClusterConnection<String, V> connection = clusterClient.connect(codec);
+            connection.setReadFrom(readFromSetting);
+            return new RedisTopologyConnection<>(connection, clusterClient::shutdown);
+        }
+
+        RedisClient redisClient = RedisClient.create();
+        if (readFromSetting == ReadFrom.MASTER) {
+            StatefulRedisConnection<String, V> connection = redisClient.connect(codec, getMasterUri(url));
+            return new RedisTopologyConnection<>(connection, redisClient::shutdown);
+        }
+
+        List<RedisURI> uris = mode == Mode.SENTINEL ? List.of(getMasterUri(url)) : seedUris(url);
+        StatefulRedisMasterSlaveConnection<String, V> connection = MasterSlave.connect(redisClient, codec, uris);
+        connection.setReadFrom(readFromSetting);
+        return new RedisTopologyConnection<>(connection, redisClient::shutdown);
+    }
+
+    public RedisURI getMasterUri(RedisURI url) {
+        if (mode != Mode.SENTINEL) {
+            return url;
+        }
+        if (!isSentinelConfigured()) {
+            throw new IllegalStateException("Redis SENTINEL mode needs at least one sentinel in nodes and a sentinelMasterId");
+        }
+
+        URI firstSentinel = nodes.get(0);
+        RedisURI.Builder builder = RedisURI.Builder
+                .sentinel(firstSentinel.getHost(), firstSentinel.getPort(), sentinelMasterId)
+                .withDatabase(url.getDatabase());
+        nodes.stream().skip(1).forEach(node -> builder.withSentinel(node.getHost(), node.getPort()));
+        if (url.getPassword() != null) {
+            builder.withPassword(url.getPassword());
+        }
+        return builder.build();
+    }
+
+    private List<RedisURI> seedUris(RedisURI url) {
+        List<RedisURI> uris = new ArrayList<>();
+        if (mode != Mode.CLUSTER || nodes.isEmpty()) {
+            uris.add(url);
+        }
+        uris.addAll(nodes.stream().map(RedisURI::create).collect(Collectors.toList()));
+        return uris;
+    }
+}
@@ -1,17 +1,22 @@
 package uk.gov.ida.notification.configuration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import io.lettuce.core.RedisClient;
-import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.RedisURI;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import org.opensaml.storage.ReplayCache;
 import org.opensaml.storage.StorageService;
-import org.opensaml.storage.impl.MemoryStorageService;
 import se.litsec.opensaml.saml2.common.response.MessageReplayChecker;
 import se.litsec.opensaml.saml2.common.response.MessageReplayCheckerImpl;
+import uk.gov.ida.notification.saml.validation.components.RecentIdMessageReplayChecker;
+import uk.gov.ida.notification.session.storage.InMemoryReplayStorageService;
 import uk.gov.ida.notification.session.storage.RedisStorageService;
+import uk.gov.ida.notification.session.storage.RedisTopologyConnection;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.Clock;
+import java.time.Duration;
 
 public class ReplayCheckerConfiguration {
 
@@ -19,23 +24,58 @@ public class ReplayCheckerConfiguration {
     @JsonProperty
     private String redisUrl = "";
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private RedisTopologyConfiguration redisTopology = new RedisTopologyConfiguration();
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long expirationSeconds = 300L;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long localMaxEntries = 100_000L;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Boolean localRecentIds = false;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long localRecentIdsPerWindow = 100_000L;
+
     public MessageReplayChecker createMessageReplayChecker(String name) throws Exception {
         MessageReplayCheckerImpl checker = new MessageReplayCheckerImpl();
         checker.setReplayCache(createReplayCache(name + "-replay-cache", createStorageService(name)));
         checker.setReplayCacheName(name);
+        checker.setReplayCacheExpiration(Duration.ofSeconds(expirationSeconds).toMillis());
         checker.afterPropertiesSet();
-        return checker;
+
+        if (!localRecentIds || redisUrl == null || redisUrl.isEmpty()) {
+            return checker;
+        }
+        return new RecentIdMessageReplayChecker(
+                checker,
+                Clock.systemUTC(),
+                Duration.ofSeconds(expirationSeconds),
+                localRecentIdsPerWindow);
     }
 
     private StorageService createStorageService(String name) throws ComponentInitializationException {
         if (redisUrl == null || redisUrl.isEmpty()) {
             return createMemoryCacheStorage(name + "-cache-storage");
         } else {
-            RedisCommands<String, String> sync = RedisClient
-                .create(redisUrl)
-                .connect()
-                .sync();
-            return createRedisCacheStorage(name + "-cache-storage", sync);
+            RedisURI redisURI = RedisURI.create(redisUrl);
+            RedisTopologyConnection<String> connection = redisTopology.connect(redisURI);
+            return createRedisCacheStorage(name + "-cache-storage", connection);
         }
     }
 
@@ -47,15 +87,15 @@ public class ReplayCheckerConfiguration {
         return cache;
     }
 
-    private StorageService createRedisCacheStorage(String name, RedisCommands<String, String> redis) throws ComponentInitializationException {
-        RedisStorageService storage = new RedisStorageService(redis);
+    private StorageService createRedisCacheStorage(String name, RedisTopologyConnection<String> connection) throws ComponentInitializationException {
+        RedisStorageService storage = new RedisStorageService(connection.sync(), connection.async());
         storage.setId(name);
         storage.initialize();
         return storage;
     }
 
     private StorageService createMemoryCacheStorage(String name) throws ComponentInitializationException {
-        MemoryStorageService storage = new MemoryStorageService();
+        InMemoryReplayStorageService storage = new InMemoryReplayStorageService(localMaxEntries);
         storage.setId(name);
         storage.initialize();
         return storage;
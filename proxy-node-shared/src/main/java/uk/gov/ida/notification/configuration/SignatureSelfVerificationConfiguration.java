@@ -0,0 +1,45 @@
+package uk.gov.ida.notification.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+
+public class SignatureSelfVerificationConfiguration {
+
+    public enum Policy {
+        ALWAYS,
+        SAMPLED,
+        OFF
+    }
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Policy policy = Policy.ALWAYS;
+
+    @Valid
+    @NotNull
+    @DecimalMin("0")
+    @DecimalMax("100")
+    @JsonProperty
+    private Double samplePercentage = 10.0;
+
+    public SignatureSelfVerificationConfiguration() {
+    }
+
+    public SignatureSelfVerificationConfiguration(Policy policy, Double samplePercentage) {
+        this.policy = policy;
+        this.samplePercentage = samplePercentage;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public Double getSamplePercentage() {
+        return samplePercentage;
+    }
+}
@@ -0,0 +1,70 @@
+package uk.gov.ida.notification.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class SigningServiceConfiguration {
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private Boolean enabled = false;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Integer sessions = 4;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Integer queueCapacity = 200;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Integer maxBatchSize = 8;
+
+    @Valid
+    @NotNull
+    @Min(1)
+    @JsonProperty
+    private Long signTimeoutMillis = 5_000L;
+
+    public SigningServiceConfiguration() {
+    }
+
+    public SigningServiceConfiguration(Boolean enabled, Integer sessions, Integer queueCapacity, Integer maxBatchSize, Long signTimeoutMillis) {
+        this.enabled = enabled;
+        this.sessions = sessions;
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.signTimeoutMillis = signTimeoutMillis;
+    }
+
+    public Boolean isEnabled() {
+        return enabled;
+    }
+
+    public Integer getSessions() {
+        return sessions;
+    }
+
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Integer getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public Long getSignTimeoutMillis() {
+        return signTimeoutMillis;
+    }
+}
@@ -0,0 +1,39 @@
+package uk.gov.ida.notification.contracts.metadata;
+
+import org.hibernate.validator.constraints.NotBlank;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * The countries whose metadata differs between the version a caller last saw and metatron's
+ * current {@code version}. Versions are derived from the metadata itself, so they are the same
+ * on every metatron instance. When {@code complete} is false the instance could not tell what
+ * changed (e.g. it never held the caller's version) and every cached country should be treated
+ * as changed.
+ */
+public class MetadataChanges {
+
+    @NotBlank
+    private String version;
+
+    private boolean complete;
+
+    @NotNull
+    private List<String> changedEntityIds;
+
+    // Needed for serialisation
+    public MetadataChanges() {}
+
+    public MetadataChanges(String version, boolean complete, List<String> changedEntityIds) {
+        this.version = version;
+        this.complete = complete;
+        this.changedEntityIds = changedEntityIds;
+    }
+
+    public String getVersion() { return this.version; }
+
+    public boolean isComplete() { return this.complete; }
+
+    public List<String> getChangedEntityIds() { return this.changedEntityIds; }
+}
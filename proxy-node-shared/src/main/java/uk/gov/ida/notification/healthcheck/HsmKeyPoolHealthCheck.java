@@ -0,0 +1,25 @@
+package uk.gov.ida.notification.healthcheck;
+
+import com.codahale.metrics.health.HealthCheck;
+import uk.gov.ida.notification.saml.HsmKeyPool;
+
+public class HsmKeyPoolHealthCheck extends HealthCheck {
+
+    private final HsmKeyPool hsmKeyPool;
+
+    public HsmKeyPoolHealthCheck(HsmKeyPool hsmKeyPool) {
+        this.hsmKeyPool = hsmKeyPool;
+    }
+
+    public String getName() {
+        return "hsm-key-pool";
+    }
+
+    @Override
+    protected Result check() {
+        if (!hsmKeyPool.isConnected()) {
+            return Result.unhealthy("Not connected to any HSM key label");
+        }
+        return Result.healthy("Signing with HSM key label " + hsmKeyPool.getActiveKeyLabel());
+    }
+}
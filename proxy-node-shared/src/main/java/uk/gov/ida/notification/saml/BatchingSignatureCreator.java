@@ -0,0 +1,176 @@
+package uk.gov.ida.notification.saml;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import uk.gov.ida.notification.configuration.SigningServiceConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creates signatures on a fixed set of signing threads, one per HSM session, instead of on
+ * whichever request thread asks.
+ *
+ * Requests wait in a bounded queue. Each signing thread takes whatever is queued, up to the
+ * maximum batch size, and signs it back to back, so busy periods are served in batches rather
+ * than by threads contending for sessions. A full queue is rejected straight away and a
+ * request that waits longer than the timeout is abandoned, so callers see back-pressure
+ * rather than an ever-growing backlog. Callers marshal and prepare their signatures before
+ * queueing, so only the private-key work runs on the signing threads.
+ */
+public class BatchingSignatureCreator implements SignatureCreator, Managed {
+
+    private static final Gauge QUEUE_DEPTH = Gauge.build(
+            "verify_proxy_node_signing_queue_depth",
+            "Signatures waiting for a signing session")
+            .register();
+
+    private static final Histogram BATCH_SIZE = Histogram.build(
+            "verify_proxy_node_signing_batch_size",
+            "Signatures taken by a signing session at once")
+            .buckets(1, 2, 4, 8, 16, 32, 64)
+            .register();
+
+    private static final Histogram SIGNING_LATENCY = Histogram.build(
+            "verify_proxy_node_signing_latency_seconds",
+            "Time taken by the signing key to create one signature")
+            .buckets(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1)
+            .register();
+
+    private static final Histogram QUEUE_WAIT = Histogram.build(
+            "verify_proxy_node_signing_queue_wait_seconds",
+            "Time signatures spend queued before a signing session starts on them")
+            .buckets(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1)
+            .register();
+
+    private static final Counter REJECTED = Counter.build(
+            "verify_proxy_node_signing_rejected_total",
+            "Signatures not created because the queue was full or the wait timed out")
+            .labelNames("reason")
+            .register();
+
+    private final SignatureCreator delegate;
+    private final int sessions;
+    private final int maxBatchSize;
+    private final long signTimeoutMillis;
+    private final BlockingQueue<SigningJob> queue;
+    private final ExecutorService signingThreads;
+
+    public BatchingSignatureCreator(SigningServiceConfiguration configuration) {
+        this(configuration, SignatureCreator.DIRECT);
+    }
+
+    public BatchingSignatureCreator(SigningServiceConfiguration configuration, SignatureCreator delegate) {
+        this.delegate = delegate;
+        this.sessions = configuration.getSessions();
+        this.maxBatchSize = configuration.getMaxBatchSize();
+        this.signTimeoutMillis = configuration.getSignTimeoutMillis();
+        this.queue = new ArrayBlockingQueue<>(configuration.getQueueCapacity());
+        this.signingThreads = Executors.newFixedThreadPool(sessions,
+                new ThreadFactoryBuilder().setNameFormat("signing-session-%d").setDaemon(true).build());
+    }
+
+    @Override
+    public void start() {
+        for (int i = 0; i < sessions; i++) {
+            signingThreads.execute(this::signQueuedSignatures);
+        }
+    }
+
+    @Override
+    public void stop() {
+        signingThreads.shutdownNow();
+        List<SigningJob> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(job -> job.result.completeExceptionally(new SignatureException("Signing service stopped")));
+        QUEUE_DEPTH.set(0);
+    }
+
+    @Override
+    public void createSignature(Signature signature) throws SignatureException {
+        SigningJob job = new SigningJob(signature);
+        if (!queue.offer(job)) {
+            REJECTED.labels("queue_full").inc();
+            throw new SignatureException("Signing queue is full");
+        }
+        QUEUE_DEPTH.set(queue.size());
+
+        try {
+            job.result.get(signTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            job.result.cancel(false);
+            REJECTED.labels("timeout").inc();
+            throw new SignatureException("Timed out waiting for a signing session", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SignatureException) {
+                throw (SignatureException) e.getCause();
+            }
+            throw new SignatureException("Failed to create signature", e.getCause());
+        } catch (InterruptedException e) {
+            job.result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new SignatureException("Interrupted waiting for a signing session", e);
+        }
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void signQueuedSignatures() {
+        List<SigningJob> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            QUEUE_DEPTH.set(queue.size());
+            BATCH_SIZE.observe(batch.size());
+
+            batch.forEach(this::sign);
+            batch.clear();
+        }
+    }
+
+    private void sign(SigningJob job) {
+        if (job.result.isDone()) {
+            return;
+        }
+        QUEUE_WAIT.observe((System.nanoTime() - job.queuedAt) / (double) TimeUnit.SECONDS.toNanos(1));
+        Histogram.Timer timer = SIGNING_LATENCY.startTimer();
+        try {
+            delegate.createSignature(job.signature);
+            job.result.complete(null);
+        } catch (SignatureException | RuntimeException e) {
+            job.result.completeExceptionally(e);
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
+    private static class SigningJob {
+        private final Signature signature;
+        private final long queuedAt = System.nanoTime();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private SigningJob(Signature signature) {
+            this.signature = signature;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package uk.gov.ida.notification.saml;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.Signer;
+import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.ProviderException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Holds a pool of private key handles for the signing key in the HSM.
+ *
+ * Every handle is warmed up with a test signature when the pool connects, so the first real
+ * signatures do not pay for provider initialisation, and the test signature is checked against
+ * the certificate so a key that does not match it is never used. If signing fails in the
+ * provider, for example because the HSM session has gone, the pool reconnects and retries once;
+ * other signing failures are passed straight back. It tries the key labels in order, so a second
+ * label can be configured to fail over to. A liveness probe runs periodically, reconnecting when
+ * the HSM has gone away. While failed over it tries only the first label, and moves the pool back
+ * to it once a full set of handles for that label has loaded.
+ *
+ * Any key labels after the first must name copies of the same key pair, because the
+ * certificate in signed responses does not change.
+ */
+public class HsmKeyPool implements SignatureCreator, Managed {
+
+    private static final byte[] PROBE_DATA = "verify-proxy-node-hsm-probe".getBytes(StandardCharsets.UTF_8);
+    private static final long BORROW_TIMEOUT_MILLIS = 5_000;
+
+    private static final Counter CONNECTIONS = Counter.build(
+            "verify_proxy_node_hsm_connections_total",
+            "Attempts to connect to the HSM signing key, by key label and outcome")
+            .labelNames("label", "outcome")
+            .register();
+
+    private static final Counter PROBES = Counter.build(
+            "verify_proxy_node_hsm_liveness_probes_total",
+            "HSM liveness probes, by outcome")
+            .labelNames("outcome")
+            .register();
+
+    private static final Gauge AVAILABLE_HANDLES = Gauge.build(
+            "verify_proxy_node_hsm_available_key_handles",
+            "HSM key handles not currently in use")
+            .register();
+
+    public interface SigningKeyLoader {
+        PrivateKey loadKey(String keyLabel) throws Exception;
+    }
+
+    private final SigningKeyLoader keyLoader;
+    private final X509Certificate certificate;
+    private final List<String> keyLabels;
+    private final int poolSize;
+    private final long livenessProbeIntervalSeconds;
+    private final SignatureCreator signer;
+    private final ScheduledExecutorService livenessProbe = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("hsm-liveness-probe").setDaemon(true).build());
+
+    private volatile BlockingQueue<KeyHandle> handles = new ArrayBlockingQueue<>(1);
+    private volatile long generation = 0;
+    private volatile String activeKeyLabel;
+    private volatile PrivateKey activeKey;
+
+    public HsmKeyPool(SigningKeyLoader keyLoader, X509Certificate certificate, List<String> keyLabels, int poolSize, long livenessProbeIntervalSeconds) {
+        this(keyLoader, certificate, keyLabels, poolSize, livenessProbeIntervalSeconds, Signer::signObject);
+    }
+
+    HsmKeyPool(SigningKeyLoader keyLoader, X509Certificate certificate, List<String> keyLabels, int poolSize, long livenessProbeIntervalSeconds, SignatureCreator signer) {
+        this.keyLoader = keyLoader;
+        this.certificate = certificate;
+        this.keyLabels = List.copyOf(keyLabels);
+        this.poolSize = poolSize;
+        this.livenessProbeIntervalSeconds = livenessProbeIntervalSeconds;
+        this.signer = signer;
+    }
+
+    @Override
+    public void start() {
+        livenessProbe.scheduleWithFixedDelay(this::probe, livenessProbeIntervalSeconds, livenessProbeIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() {
+        livenessProbe.shutdownNow();
+    }
+
+    /**
+     * Loads and warms up a full set of key handles, trying each key label in turn.
+     */
+    public synchronized void connect() throws SignatureException {
+        SignatureException failure = new SignatureException("No HSM key label could be used for signing");
+        for (String keyLabel : keyLabels) {
+            try {
+                install(keyLabel, loadHandles(keyLabel, generation + 1));
+                return;
+            } catch (Exception e) {
+                CONNECTIONS.labels(keyLabel, "failure").inc();
+                ProxyNodeLogger.logException(e, Level.WARNING, format("Failed to connect to HSM key label {0}", keyLabel));
+                failure.addSuppressed(e);
+            }
+        }
+        handles = new ArrayBlockingQueue<>(1);
+        activeKeyLabel = null;
+        AVAILABLE_HANDLES.set(0);
+        throw failure;
+    }
+
+    @Override
+    public void createSignature(Signature signature) throws SignatureException {
+        KeyHandle handle = borrow();
+        try {
+            sign(signature, handle);
+            release(handle);
+        } catch (SignatureException | RuntimeException e) {
+            if (!isProviderFailure(e)) {
+                release(handle);
+                throw e;
+            }
+            ProxyNodeLogger.logException(e, Level.WARNING, "Signing with HSM key handle failed, reconnecting");
+            reconnectAfterFailureOf(handle);
+            KeyHandle retryHandle = borrow();
+            try {
+                sign(signature, retryHandle);
+            } finally {
+                release(retryHandle);
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return activeKeyLabel != null;
+    }
+
+    public String getActiveKeyLabel() {
+        return activeKeyLabel;
+    }
+
+    public PrivateKey getActiveKey() {
+        return activeKey;
+    }
+
+    void probe() {
+        try {
+            if (!isConnected()) {
+                connect();
+                PROBES.labels("reconnected").inc();
+                return;
+            }
+            if (returnToFirstKeyLabel()) {
+                PROBES.labels("reconnected").inc();
+                return;
+            }
+            KeyHandle handle = borrow();
+            try {
+                warmUp(handle.key);
+                release(handle);
+            } catch (GeneralSecurityException | ProviderException e) {
+                reconnectAfterFailureOf(handle);
+                PROBES.labels("reconnected").inc();
+                return;
+            }
+            PROBES.labels("success").inc();
+        } catch (Exception e) {
+            PROBES.labels("failure").inc();
+            ProxyNodeLogger.logException(e, Level.WARNING, "HSM liveness probe failed");
+        }
+    }
+
+    /**
+     * While failed over, loads a full set of handles for the first key label and swaps them in
+     * only if every one of them loads. The pool in use is left alone if they do not.
+     */
+    private synchronized boolean returnToFirstKeyLabel() {
+        String firstKeyLabel = keyLabels.get(0);
+        if (firstKeyLabel.equals(activeKeyLabel)) {
+            return false;
+        }
+        try {
+            install(firstKeyLabel, loadHandles(firstKeyLabel, generation + 1));
+            return true;
+        } catch (Exception e) {
+            CONNECTIONS.labels(firstKeyLabel, "failure").inc();
+            ProxyNodeLogger.logException(e, Level.WARNING, format("HSM key label {0} is still unavailable, staying on {1}", firstKeyLabel, activeKeyLabel));
+            return false;
+        }
+    }
+
+    private void install(String keyLabel, BlockingQueue<KeyHandle> connected) {
+        generation++;
+        handles = connected;
+        activeKeyLabel = keyLabel;
+        activeKey = connected.peek().key;
+        AVAILABLE_HANDLES.set(connected.size());
+        CONNECTIONS.labels(keyLabel, "success").inc();
+        ProxyNodeLogger.info(format("Connected {0} HSM key handles using key label {1}", poolSize, keyLabel));
+    }
+
+    private BlockingQueue<KeyHandle> loadHandles(String keyLabel, long handleGeneration) throws Exception {
+        List<KeyHandle> loaded = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            PrivateKey key = keyLoader.loadKey(keyLabel);
+            if (key == null) {
+                throw new GeneralSecurityException(format("HSM has no key with label {0}", keyLabel));
+            }
+            warmUp(key);
+            loaded.add(new KeyHandle(key, handleGeneration));
+        }
+        return new ArrayBlockingQueue<>(poolSize, false, loaded);
+    }
+
+    private void warmUp(PrivateKey key) throws GeneralSecurityException {
+        String algorithm = "EC".equals(key.getAlgorithm()) ? "SHA384withECDSA" : "SHA256withRSA";
+        java.security.Signature signing = java.security.Signature.getInstance(algorithm);
+        signing.initSign(key);
+        signing.update(PROBE_DATA);
+        byte[] signatureValue = signing.sign();
+
+        java.security.Signature verification = java.security.Signature.getInstance(algorithm);
+        verification.initVerify(certificate.getPublicKey());
+        verification.update(PROBE_DATA);
+        if (!verification.verify(signatureValue)) {
+            throw new GeneralSecurityException("HSM key does not match the signing certificate");
+        }
+    }
+
+    private synchronized void reconnectAfterFailureOf(KeyHandle handle) throws SignatureException {
+        if (handle.generation == generation) {
+            connect();
+        }
+    }
+
+    private KeyHandle borrow() throws SignatureException {
+        try {
+            KeyHandle handle = handles.poll(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            if (handle == null) {
+                throw new SignatureException("No HSM key handle available");
+            }
+            AVAILABLE_HANDLES.dec();
+            return handle;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SignatureException("Interrupted waiting for an HSM key handle", e);
+        }
+    }
+
+    private void release(KeyHandle handle) {
+        if (handle.generation == generation && handles.offer(handle)) {
+            AVAILABLE_HANDLES.inc();
+        }
+    }
+
+    /**
+     * Whether signing failed in the security provider, where a lost HSM session or key handle
+     * surfaces, rather than in preparing the signature.
+     */
+    private static boolean isProviderFailure(Throwable failure) {
+        return Throwables.getCausalChain(failure).stream()
+                .anyMatch(cause -> cause instanceof ProviderException || cause instanceof GeneralSecurityException);
+    }
+
+    private void sign(Signature signature, KeyHandle handle) throws SignatureException {
+        signature.setSigningCredential(new BasicX509Credential(certificate, handle.key));
+        signer.createSignature(signature);
+    }
+
+    private static class KeyHandle {
+        private final PrivateKey key;
+        private final long generation;
+
+        private KeyHandle(PrivateKey key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
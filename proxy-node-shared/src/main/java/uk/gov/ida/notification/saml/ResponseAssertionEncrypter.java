@@ -1,5 +1,8 @@
 package uk.gov.ida.notification.saml;
 
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.EncryptedAssertion;
 import org.opensaml.saml.saml2.core.Response;
@@ -18,16 +21,26 @@ import uk.gov.ida.saml.security.EncrypterFactory;
 import java.security.interfaces.RSAPublicKey;
 import java.util.stream.Collectors;
 
+/**
+ * Encrypts assertions for one connector. Everything derived from the connector's certificate,
+ * including the KeyInfo added to each EncryptedKey, is built once so an instance can be kept
+ * and shared between responses.
+ */
 public class ResponseAssertionEncrypter {
     private final Encrypter encrypter;
-    private X509Credential encryptionCredential;
+    private final KeyInfo keyInfoTemplate;
 
     public ResponseAssertionEncrypter(X509Credential encryptionCredential) {
         EncrypterFactory encrypterFactory = new EncrypterFactory()
                 .withDataEncryptionAlgorithm(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128_GCM)
                 .withKeyPlacement(Encrypter.KeyPlacement.INLINE);
-        this.encryptionCredential = encryptionCredential;
-        this.encrypter = encrypterFactory.createEncrypter(this.encryptionCredential);
+        this.encrypter = encrypterFactory.createEncrypter(encryptionCredential);
+        try {
+            this.keyInfoTemplate = buildKeyInfo(encryptionCredential);
+            XMLObjectSupport.marshall(this.keyInfoTemplate);
+        } catch (SecurityException | MarshallingException e) {
+            throw new ResponseAssertionEncryptionException(e);
+        }
     }
 
     public Response encrypt(Response response) {
@@ -45,14 +58,22 @@ public class ResponseAssertionEncrypter {
     private EncryptedAssertion encryptAssertion(Assertion plaintextAssertion) {
         try {
             EncryptedAssertion encryptedAssertion = encrypter.encrypt(plaintextAssertion);
-            encryptedAssertion.getEncryptedData().getKeyInfo().getEncryptedKeys().get(0).setKeyInfo(buildKeyInfo());
+            encryptedAssertion.getEncryptedData().getKeyInfo().getEncryptedKeys().get(0).setKeyInfo(copyKeyInfoTemplate());
             return encryptedAssertion;
-        } catch (EncryptionException | SecurityException e) {
+        } catch (EncryptionException | MarshallingException | UnmarshallingException e) {
             throw new ResponseAssertionEncryptionException(e);
         }
     }
 
-    private KeyInfo buildKeyInfo() throws SecurityException {
+    private KeyInfo copyKeyInfoTemplate() throws MarshallingException, UnmarshallingException {
+        // The template's cached DOM is only read here, but DOM implementations do not promise
+        // that concurrent reads are safe
+        synchronized (keyInfoTemplate) {
+            return XMLObjectSupport.cloneXMLObject(keyInfoTemplate, XMLObjectSupport.CloneOutputOption.RootDOMInNewDocument);
+        }
+    }
+
+    private static KeyInfo buildKeyInfo(X509Credential encryptionCredential) throws SecurityException {
         X509KeyInfoGeneratorFactory x509KeyInfoGeneratorFactory = new X509KeyInfoGeneratorFactory();
         x509KeyInfoGeneratorFactory.setEmitEntityCertificate(true);
         KeyInfo keyInfo = x509KeyInfoGeneratorFactory.newInstance().generate(encryptionCredential);
@@ -8,21 +8,58 @@ import org.opensaml.saml.common.SAMLObject;
 import org.w3c.dom.Element;
 import uk.gov.ida.notification.exceptions.saml.SamlMarshallingException;
 
+import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
+/**
+ * Serialises SAML objects as UTF-8 XML.
+ *
+ * Transformers are created once per thread from a single factory rather than looked up for
+ * every message. The byte and Base64 forms are written straight from the DOM into one output
+ * buffer, so a response is not also held as a string and an array of string bytes on the way.
+ */
 public class SamlObjectMarshaller {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+    private static final ThreadLocal<Transformer> TRANSFORMER = ThreadLocal.withInitial(SamlObjectMarshaller::newTransformer);
+
     public String transformToString(SAMLObject samlObject) {
-        try {
-            marshallToElement(samlObject);
-            return transformToString(samlObject.getDOM());
-        } catch (MarshallingException | TransformerException e) {
-            throw new SamlMarshallingException(e);
+        StringWriter output = new StringWriter();
+        transform(samlObject, new StreamResult(output));
+        return output.toString();
+    }
+
+    public byte[] transformToBytes(SAMLObject samlObject) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        writeTo(samlObject, output);
+        return output.toByteArray();
+    }
+
+    public String transformToBase64(SAMLObject samlObject) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (OutputStream base64Output = Base64.getEncoder().wrap(output)) {
+            writeTo(samlObject, base64Output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    public void writeTo(SAMLObject samlObject, OutputStream output) {
+        transform(samlObject, new StreamResult(output));
     }
 
     public Element marshallToElement(SAMLObject samlObject) throws MarshallingException {
@@ -31,10 +68,27 @@ public class SamlObjectMarshaller {
         return marshaller.marshall(samlObject);
     }
 
-    private String transformToString(Element element) throws TransformerException {
-        StringWriter output = new StringWriter();
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.transform(new DOMSource(element), new StreamResult(output));
-        return output.toString();
+    private void transform(SAMLObject samlObject, Result result) {
+        try {
+            marshallToElement(samlObject);
+            Transformer transformer = TRANSFORMER.get();
+            try {
+                transformer.transform(new DOMSource(samlObject.getDOM()), result);
+            } finally {
+                transformer.reset();
+            }
+        } catch (MarshallingException | TransformerException e) {
+            throw new SamlMarshallingException(e);
+        }
+    }
+
+    private static Transformer newTransformer() {
+        try {
+            synchronized (TRANSFORMER_FACTORY) {
+                return TRANSFORMER_FACTORY.newTransformer();
+            }
+        } catch (TransformerConfigurationException e) {
+            throw new SamlMarshallingException(e);
+        }
     }
 }
@@ -1,45 +1,107 @@
 package uk.gov.ida.notification.saml;
 
+import io.prometheus.client.Counter;
 import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
 import org.opensaml.security.SecurityException;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.xmlsec.SignatureSigningParameters;
+import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureException;
 import org.opensaml.xmlsec.signature.support.SignatureSupport;
 import org.opensaml.xmlsec.signature.support.SignatureValidator;
 import org.slf4j.MDC;
+import uk.gov.ida.notification.configuration.SignatureSelfVerificationConfiguration;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
 import uk.gov.ida.notification.shared.logging.ProxyNodeMDCKey;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Signs SAML objects and, depending on the self-verification policy, checks the signature it
+ * has just made before it is sent. A signature that fails the check is never returned.
+ */
 public class SamlObjectSigner {
 
+    private static final Counter SELF_VERIFICATIONS = Counter.build(
+            "verify_proxy_node_signature_self_verifications_total",
+            "Checks of signatures the proxy node has just made, by outcome")
+            .labelNames("outcome")
+            .register();
+
+    private static final SAMLSignatureProfileValidator SIGNATURE_PROFILE_VALIDATOR = new SAMLSignatureProfileValidator();
+
     private final SignatureSigningParameters signingParams;
-    private final Long keyHandle;
+    private final Supplier<Long> keyHandle;
+    private final SignatureSelfVerificationConfiguration selfVerification;
+    private final SignatureCreator signatureCreator;
 
     public SamlObjectSigner(BasicX509Credential signingCredential, String signingAlgorithm, Long keyHandle) {
+        this(signingCredential, signingAlgorithm, keyHandle, new SignatureSelfVerificationConfiguration());
+    }
+
+    public SamlObjectSigner(BasicX509Credential signingCredential, String signingAlgorithm, Long keyHandle, SignatureSelfVerificationConfiguration selfVerification) {
+        this(signingCredential, signingAlgorithm, () -> keyHandle, selfVerification, SignatureCreator.DIRECT);
+    }
+
+    /**
+     * @param keyHandle supplies the HSM key handle to log with each signing request, read at signing time
+     *                  so it follows the signature creator across reconnects and failover
+     */
+    public SamlObjectSigner(BasicX509Credential signingCredential, String signingAlgorithm, Supplier<Long> keyHandle, SignatureSelfVerificationConfiguration selfVerification, SignatureCreator signatureCreator) {
         this.signingParams = SignatureSigningParametersHelper.build(signingCredential, signingAlgorithm);
         this.keyHandle = keyHandle;
+        this.selfVerification = selfVerification;
+        this.signatureCreator = signatureCreator;
     }
 
     public void sign(SignableSAMLObject signableSAMLObject, String responseId) throws MarshallingException, SecurityException, SignatureException {
         logSigningRequest(responseId, signingParams.getSigningCredential().getEntityId());
-        SignatureSupport.signObject(signableSAMLObject, signingParams);
-        SAMLSignatureProfileValidator signatureProfileValidator = new SAMLSignatureProfileValidator();
-        signatureProfileValidator.validate(signableSAMLObject.getSignature());
-        SignatureValidator.validate(signableSAMLObject.getSignature(), signingParams.getSigningCredential());
+        Signature signature = SamlBuilder.build(Signature.DEFAULT_ELEMENT_NAME);
+        SignatureSupport.prepareSignatureParams(signature, signingParams);
+        signableSAMLObject.setSignature(signature);
+        XMLObjectSupport.marshall(signableSAMLObject);
+        signatureCreator.createSignature(signature);
+        if (shouldVerifySignature()) {
+            verifySignature(signableSAMLObject);
+        }
     }
 
     public SignatureSigningParameters getSigningParams() {
         return signingParams;
     }
 
+    private boolean shouldVerifySignature() {
+        switch (selfVerification.getPolicy()) {
+            case OFF:
+                return false;
+            case SAMPLED:
+                return ThreadLocalRandom.current().nextDouble(100) < selfVerification.getSamplePercentage();
+            default:
+                return true;
+        }
+    }
+
+    private void verifySignature(SignableSAMLObject signableSAMLObject) throws SignatureException {
+        try {
+            SIGNATURE_PROFILE_VALIDATOR.validate(signableSAMLObject.getSignature());
+            SignatureValidator.validate(signableSAMLObject.getSignature(), signingParams.getSigningCredential());
+        } catch (SignatureException e) {
+            SELF_VERIFICATIONS.labels("failure").inc();
+            throw e;
+        }
+        SELF_VERIFICATIONS.labels("success").inc();
+    }
+
     private  void logSigningRequest(String responseId, String signingProvider) {
         ProxyNodeLogger.addContext(ProxyNodeMDCKey.EIDAS_REQUEST_ID, responseId);
         ProxyNodeLogger.addContext(ProxyNodeMDCKey.SIGNING_PROVIDER, signingProvider);
-        if ( this.keyHandle != null ) {
-            ProxyNodeLogger.addContext(ProxyNodeMDCKey.HSM_KEY_HANDLE, this.keyHandle.toString());
+        Long currentKeyHandle = this.keyHandle.get();
+        if ( currentKeyHandle != null ) {
+            ProxyNodeLogger.addContext(ProxyNodeMDCKey.HSM_KEY_HANDLE, currentKeyHandle.toString());
         }
         ProxyNodeLogger.info("Sending a request to the HSM to sign eIDAS SAML message");
         MDC.remove(ProxyNodeMDCKey.SIGNING_PROVIDER.name());
@@ -0,0 +1,16 @@
+package uk.gov.ida.notification.saml;
+
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.Signer;
+
+/**
+ * Computes the value of a prepared, marshalled signature. This is the step that uses the
+ * private key, so it is where calls to an HSM happen.
+ */
+public interface SignatureCreator {
+
+    SignatureCreator DIRECT = Signer::signObject;
+
+    void createSignature(Signature signature) throws SignatureException;
+}
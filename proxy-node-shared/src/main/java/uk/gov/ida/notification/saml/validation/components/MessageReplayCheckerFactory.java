@@ -1,13 +1,13 @@
 package uk.gov.ida.notification.saml.validation.components;
 
-import io.lettuce.core.api.sync.RedisCommands;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import org.opensaml.storage.ReplayCache;
 import org.opensaml.storage.StorageService;
-import org.opensaml.storage.impl.MemoryStorageService;
 import se.litsec.opensaml.saml2.common.response.MessageReplayChecker;
 import se.litsec.opensaml.saml2.common.response.MessageReplayCheckerImpl;
+import uk.gov.ida.notification.session.storage.InMemoryReplayStorageService;
 import uk.gov.ida.notification.session.storage.RedisStorageService;
+import uk.gov.ida.notification.session.storage.RedisTopologyConnection;
 
 public class MessageReplayCheckerFactory {
     private MessageReplayCheckerFactory() {
@@ -29,15 +29,15 @@ public class MessageReplayCheckerFactory {
         return cache;
     }
 
-    public static StorageService createRedisCacheStorage(String name, RedisCommands<String, String> redis) throws ComponentInitializationException {
-        RedisStorageService storage = new RedisStorageService(redis);
+    public static StorageService createRedisCacheStorage(String name, RedisTopologyConnection<String> redis) throws ComponentInitializationException {
+        RedisStorageService storage = new RedisStorageService(redis.sync(), redis.async());
         storage.setId(name);
         storage.initialize();
         return storage;
     }
 
-    public static StorageService createMemoryCacheStorage(String name) throws ComponentInitializationException {
-        MemoryStorageService storage = new MemoryStorageService();
+    public static StorageService createMemoryCacheStorage(String name, long maxEntries) throws ComponentInitializationException {
+        InMemoryReplayStorageService storage = new InMemoryReplayStorageService(maxEntries);
         storage.setId(name);
         storage.initialize();
         return storage;
@@ -0,0 +1,130 @@
+package uk.gov.ida.notification.saml.validation.components;
+
+import io.prometheus.client.Counter;
+import org.opensaml.saml.common.SAMLObject;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.RequestAbstractType;
+import org.opensaml.saml.saml2.core.StatusResponseType;
+import se.litsec.opensaml.saml2.common.response.MessageReplayChecker;
+import se.litsec.opensaml.saml2.common.response.MessageReplayException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fronts the authoritative (usually Redis-backed) replay checker with a local set of the
+ * message IDs this instance has accepted in the last one to two replay windows.
+ *
+ * Every new ID is still checked against, and recorded in, the authoritative cache on the request
+ * path, so only that cache decides whether a message is accepted. The local set only lets a
+ * replay of an ID this instance accepted be rejected without a round-trip, which is where repeated
+ * replays against one instance would otherwise cost Redis the most. Each window's set is capped at
+ * {@code maxIdsPerWindow}, after which replays of later IDs go to the authoritative cache.
+ */
+public class RecentIdMessageReplayChecker implements MessageReplayChecker {
+
+    private static final Counter CHECKS = Counter.build(
+            "verify_proxy_node_replay_local_checks_total",
+            "Number of replay checks by whether the ID was in this instance's recent IDs")
+            .labelNames("outcome")
+            .register();
+
+    private final MessageReplayChecker authoritativeChecker;
+    private final Clock clock;
+    private final long windowMillis;
+    private final long maxIdsPerWindow;
+
+    private volatile Window currentWindow;
+    private volatile Window previousWindow;
+    private volatile long currentWindowStart;
+
+    public RecentIdMessageReplayChecker(
+            MessageReplayChecker authoritativeChecker,
+            Clock clock,
+            Duration replayWindow,
+            long maxIdsPerWindow) {
+        this.authoritativeChecker = authoritativeChecker;
+        this.clock = clock;
+        this.windowMillis = replayWindow.toMillis();
+        this.maxIdsPerWindow = maxIdsPerWindow;
+        this.currentWindow = newWindow();
+        this.previousWindow = newWindow();
+        this.currentWindowStart = clock.millis();
+    }
+
+    @Override
+    public void checkReplay(String id) throws MessageReplayException {
+        rotateIfDue();
+        Window current = currentWindow;
+        Window previous = previousWindow;
+
+        if (current.accepted(id) || previous.accepted(id)) {
+            CHECKS.labels("seen").inc();
+            throw replayOf(id);
+        }
+        CHECKS.labels("unseen").inc();
+
+        authoritativeChecker.checkReplay(id);
+        current.record(id);
+    }
+
+    @Override
+    public void checkReplay(SAMLObject object) throws MessageReplayException, IllegalArgumentException {
+        if (object instanceof RequestAbstractType) {
+            checkReplay(((RequestAbstractType) object).getID());
+        } else if (object instanceof StatusResponseType) {
+            checkReplay(((StatusResponseType) object).getID());
+        } else if (object instanceof Assertion) {
+            checkReplay(((Assertion) object).getID());
+        } else {
+            throw new IllegalArgumentException("Unsupported object type for replay check: " + object.getClass().getName());
+        }
+    }
+
+    private void rotateIfDue() {
+        long now = clock.millis();
+        if (now - currentWindowStart < windowMillis) {
+            return;
+        }
+        synchronized (this) {
+            long elapsed = now - currentWindowStart;
+            if (elapsed < windowMillis) {
+                return;
+            }
+            // Keep one full window of history so an ID is remembered for at least the replay TTL
+            previousWindow = elapsed < 2 * windowMillis ? currentWindow : newWindow();
+            currentWindow = newWindow();
+            currentWindowStart = now;
+        }
+    }
+
+    private Window newWindow() {
+        return new Window(maxIdsPerWindow);
+    }
+
+    private static MessageReplayException replayOf(String id) {
+        return new MessageReplayException("Replay check of ID '" + id + "' failed");
+    }
+
+    private static class Window {
+
+        private final Set<String> acceptedIds = ConcurrentHashMap.newKeySet();
+        private final long maxAcceptedIds;
+
+        private Window(long maxAcceptedIds) {
+            this.maxAcceptedIds = maxAcceptedIds;
+        }
+
+        private boolean accepted(String id) {
+            return acceptedIds.contains(id);
+        }
+
+        private void record(String id) {
+            if (acceptedIds.size() < maxAcceptedIds) {
+                acceptedIds.add(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package uk.gov.ida.notification.session.storage;
+
+import net.shibboleth.utilities.java.support.collection.Pair;
+import org.opensaml.storage.AbstractStorageService;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Clock;
+
+/**
+ * A replay-cache {@link org.opensaml.storage.StorageService} for single-node deployments.
+ *
+ * Only the presence and expiry of each record is kept: context and key are hashed to 64 bits
+ * each and stored with the expiry in primitive, open-addressed tables, split into independently
+ * locked segments. Values are not retained, so reads return a placeholder value at version 1,
+ * which is all {@link org.opensaml.storage.ReplayCache} needs. There is no reaper thread: each
+ * create frees a few expired slots as it goes, in place, so the table is never rebuilt under
+ * its lock.
+ *
+ * Capacity is fixed up front. A create that would exceed it, once the expired records in its
+ * segment have been freed, fails with an IOException, which the replay cache treats as a failed
+ * check.
+ */
+public class InMemoryReplayStorageService extends AbstractStorageService {
+
+    private static final String PLACEHOLDER_VALUE = "x";
+    private static final long VERSION = 1L;
+    private static final int SEGMENTS = 16;
+    private static final long NEVER_USED = 0L;
+    private static final long DELETED = -1L;
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+    private static final int SLOTS_SWEPT_PER_CREATE = 4;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Clock clock;
+    private final long hashSeed = new SecureRandom().nextLong();
+
+    public InMemoryReplayStorageService(long maxEntries) {
+        this(maxEntries, Clock.systemUTC());
+    }
+
+    InMemoryReplayStorageService(long maxEntries, Clock clock) {
+        this.clock = clock;
+        int segmentCapacity = (int) Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.setContextSize(1024);
+    }
+
+    @Override
+    public boolean create(String context, String key, String value, Long expiration) throws IOException {
+        long contextHash = hash(context);
+        long keyHash = hash(key);
+        return segmentFor(contextHash, keyHash).create(contextHash, keyHash, expiryOf(expiration), clock.millis());
+    }
+
+    @Override
+    public StorageRecord read(String context, String key) {
+        long contextHash = hash(context);
+        long keyHash = hash(key);
+        long expiry = segmentFor(contextHash, keyHash).expiryOf(contextHash, keyHash, clock.millis());
+        return expiry == NEVER_USED ? null : new ReplayRecord(expiry);
+    }
+
+    @Override
+    public Pair<Long, StorageRecord> read(String context, String key, long version) {
+        StorageRecord record = read(context, key);
+        if (record == null) {
+            return new Pair<>(null, null);
+        }
+        return new Pair<>(VERSION, version == VERSION ? null : record);
+    }
+
+    @Override
+    public boolean update(String context, String key, String value, Long expiration) {
+        return updateExpiration(context, key, expiration);
+    }
+
+    @Override
+    public Long updateWithVersion(long version, String context, String key, String value, Long expiration) throws VersionMismatchException {
+        if (read(context, key) == null) {
+            return null;
+        }
+        if (version != VERSION) {
+            throw new VersionMismatchException(String.format("Expected version to be %d but it was %d", version, VERSION));
+        }
+        updateExpiration(context, key, expiration);
+        return VERSION;
+    }
+
+    @Override
+    public boolean updateExpiration(String context, String key, Long expiration) {
+        long contextHash = hash(context);
+        long keyHash = hash(key);
+        return segmentFor(contextHash, keyHash).updateExpiry(contextHash, keyHash, expiryOf(expiration), clock.millis());
+    }
+
+    @Override
+    public boolean delete(String context, String key) {
+        long contextHash = hash(context);
+        long keyHash = hash(key);
+        return segmentFor(contextHash, keyHash).delete(contextHash, keyHash, clock.millis());
+    }
+
+    @Override
+    public boolean deleteWithVersion(long version, String context, String key) throws VersionMismatchException {
+        if (read(context, key) == null) {
+            return false;
+        }
+        if (version != VERSION) {
+            throw new VersionMismatchException(String.format("Expected version to be %d but it was %d", version, VERSION));
+        }
+        return delete(context, key);
+    }
+
+    @Override
+    public void reap(String context) {
+        long now = clock.millis();
+        for (Segment segment : segments) {
+            segment.sweepAll(now);
+        }
+    }
+
+    @Override
+    public void updateContextExpiration(String context, Long expiration) {
+        long contextHash = hash(context);
+        long now = clock.millis();
+        for (Segment segment : segments) {
+            segment.updateContextExpiry(contextHash, expiryOf(expiration), now);
+        }
+    }
+
+    @Override
+    public void deleteContext(String context) {
+        long contextHash = hash(context);
+        long now = clock.millis();
+        for (Segment segment : segments) {
+            segment.updateContextExpiry(contextHash, DELETED, now);
+        }
+    }
+
+    private Segment segmentFor(long contextHash, long keyHash) {
+        return segments[(int) ((contextHash ^ keyHash) >>> 60)];
+    }
+
+    private static long expiryOf(Long expiration) {
+        return expiration == null ? NO_EXPIRY : Math.max(1L, expiration);
+    }
+
+    // Seeded FNV-1a finished with the MurmurHash3 mixer; hashes chars directly to avoid allocating
+    private long hash(String value) {
+        long h = hashSeed ^ 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A linear-probing table. A slot's expiry is {@link #NEVER_USED} if it is empty (ending any
+     * probe), {@link #DELETED} or a time in the past if its record is dead, and otherwise the
+     * time its record expires. Dead records can be overwritten by a create probing past them,
+     * and are freed by the sweep, which moves later records of the same run back over them so
+     * no probe is broken.
+     */
+    private static class Segment {
+
+        private final int capacity;
+        private final int mask;
+        private final long[] contextHashes;
+        private final long[] keyHashes;
+        private final long[] expiries;
+        private int usedSlots = 0;
+        private int sweepCursor = 0;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+            this.mask = tableSize - 1;
+            this.contextHashes = new long[tableSize];
+            this.keyHashes = new long[tableSize];
+            this.expiries = new long[tableSize];
+        }
+
+        private synchronized boolean create(long contextHash, long keyHash, long expiry, long now) throws IOException {
+            sweep(SLOTS_SWEPT_PER_CREATE, now);
+            while (true) {
+                int reusable = -1;
+                int slot = indexOf(contextHash, keyHash);
+                while (expiries[slot] != NEVER_USED) {
+                    if (contextHashes[slot] == contextHash && keyHashes[slot] == keyHash && isLive(slot, now)) {
+                        return false;
+                    }
+                    if (reusable < 0 && !isLive(slot, now)) {
+                        reusable = slot;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+
+                if (reusable < 0) {
+                    if (usedSlots >= capacity) {
+                        // Freeing moves records about, so probe again once there is room
+                        if (!freeOneSlot(now)) {
+                            throw new IOException("Replay cache is full");
+                        }
+                        continue;
+                    }
+                    reusable = slot;
+                    usedSlots++;
+                }
+                contextHashes[reusable] = contextHash;
+                keyHashes[reusable] = keyHash;
+                expiries[reusable] = expiry;
+                return true;
+            }
+        }
+
+        private synchronized long expiryOf(long contextHash, long keyHash, long now) {
+            int slot = find(contextHash, keyHash, now);
+            return slot < 0 ? NEVER_USED : expiries[slot];
+        }
+
+        private synchronized boolean updateExpiry(long contextHash, long keyHash, long expiry, long now) {
+            int slot = find(contextHash, keyHash, now);
+            if (slot < 0) {
+                return false;
+            }
+            expiries[slot] = expiry;
+            return true;
+        }
+
+        private synchronized boolean delete(long contextHash, long keyHash, long now) {
+            int slot = find(contextHash, keyHash, now);
+            if (slot < 0) {
+                return false;
+            }
+            expiries[slot] = DELETED;
+            return true;
+        }
+
+        private synchronized void updateContextExpiry(long contextHash, long expiry, long now) {
+            for (int slot = 0; slot <= mask; slot++) {
+                if (contextHashes[slot] == contextHash && isLive(slot, now)) {
+                    expiries[slot] = expiry;
+                }
+            }
+        }
+
+        private synchronized void sweepAll(long now) {
+            sweep(mask + 1, now);
+        }
+
+        private boolean freeOneSlot(long now) {
+            int before = usedSlots;
+            for (int swept = 0; swept <= mask && usedSlots == before; swept++) {
+                sweep(1, now);
+            }
+            return usedSlots < before;
+        }
+
+        private void sweep(int slots, long now) {
+            for (int i = 0; i < slots; i++) {
+                int slot = sweepCursor;
+                sweepCursor = (sweepCursor + 1) & mask;
+                while (expiries[slot] != NEVER_USED && !isLive(slot, now)) {
+                    free(slot);
+                }
+            }
+        }
+
+        // Knuth's deletion for linear probing: later records of the run whose home slot is not
+        // between the hole and themselves move back into it, leaving a new hole behind
+        private void free(int slot) {
+            int hole = slot;
+            expiries[hole] = NEVER_USED;
+            usedSlots--;
+            int next = hole;
+            while (true) {
+                next = (next + 1) & mask;
+                if (expiries[next] == NEVER_USED) {
+                    return;
+                }
+                int home = indexOf(contextHashes[next], keyHashes[next]);
+                boolean homeAfterHole = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (homeAfterHole) {
+                    continue;
+                }
+                contextHashes[hole] = contextHashes[next];
+                keyHashes[hole] = keyHashes[next];
+                expiries[hole] = expiries[next];
+                expiries[next] = NEVER_USED;
+                hole = next;
+            }
+        }
+
+        private int find(long contextHash, long keyHash, long now) {
+            int slot = indexOf(contextHash, keyHash);
+            while (expiries[slot] != NEVER_USED) {
+                if (contextHashes[slot] == contextHash && keyHashes[slot] == keyHash && isLive(slot, now)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private boolean isLive(int slot, long now) {
+            return expiries[slot] > now;
+        }
+
+        private int indexOf(long contextHash, long keyHash) {
+            return (int) (contextHash * 31 + keyHash) & mask;
+        }
+    }
+
+    private static class ReplayRecord extends StorageRecord {
+        private ReplayRecord(long expiry) {
+            super(PLACEHOLDER_VALUE, expiry == NO_EXPIRY ? null : expiry);
+            setVersion(VERSION);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package uk.gov.ida.notification.session.storage;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * A Lua script run by its SHA1 digest, so each call is a single EVALSHA round-trip.
+ * Falls back to EVAL (which also re-caches the script) if the server has lost its
+ * script cache, e.g. after a restart or failover.
+ */
+class RedisScript {
+
+    private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+
+    private final String source;
+    private final ScriptOutputType outputType;
+    private final String digest;
+
+    RedisScript(ScriptOutputType outputType, String... lines) {
+        this.source = String.join("\n", lines);
+        this.outputType = outputType;
+        this.digest = sha1Hex(source);
+    }
+
+    void load(RedisClusterCommands<String, String> redis) {
+        redis.scriptLoad(source);
+    }
+
+    <T> T execute(RedisClusterCommands<String, String> redis, String key, String... args) {
+        return execute(redis, List.of(key), args);
+    }
+
+    <T> T execute(RedisClusterCommands<String, String> redis, List<String> keyList, String... args) {
+        String[] keys = keyList.toArray(new String[0]);
+        try {
+            return redis.evalsha(digest, outputType, keys, args);
+        } catch (RedisCommandExecutionException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith(NO_SCRIPT_ERROR)) {
+                throw e;
+            }
+            return redis.eval(source, outputType, keys, args);
+        }
+    }
+
+    private static String sha1Hex(String source) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
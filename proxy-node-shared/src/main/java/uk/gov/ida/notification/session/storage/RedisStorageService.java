@@ -1,44 +1,141 @@
 package uk.gov.ida.notification.session.storage;
 
-import io.lettuce.core.KeyScanCursor;
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
 import io.lettuce.core.ScanArgs;
 import io.lettuce.core.ScanCursor;
-import io.lettuce.core.TransactionResult;
-import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScoredValueScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.ZAddArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
 import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import org.opensaml.storage.AbstractStorageService;
 import org.opensaml.storage.StorageRecord;
 import org.opensaml.storage.VersionMismatchException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * Each context is split into {@value #CONTEXT_SHARDS} shards by key hash. Records are stored as
+ * hashes keyed {@code {context#shard}:key}, and each shard has an index: a sorted set of its
+ * record keys scored by expiry. The hash tag keeps a record and its index in the same cluster
+ * slot, so CREATE maintains the index atomically, while a busy context still spreads across
+ * several slots. CREATE prunes expired entries from the index it writes to, so an index never
+ * holds much more than the records that are still live, and whole-context operations walk the
+ * indexes instead of SCANning the keyspace.
+ */
 public class RedisStorageService extends AbstractStorageService {
 
     private static final Long INITIAL_VERSION = 1L;
+    private static final int CONTEXT_SHARDS = 16;
+    private static final int CONTEXT_BATCH_SIZE = 500;
+    private static final long CONTEXT_BATCH_TIMEOUT_SECONDS = 30;
 
-    private final RedisCommands<String, String> redis;
+    // Results of the versioned scripts: {status} or {status, version}
+    private static final long MISSING = 0;
+    private static final long VERSION_MISMATCH = 1;
+    private static final long UPDATED = 2;
 
-    public RedisStorageService(RedisCommands<String, String> redis) {
+    private static final RedisScript CREATE = new RedisScript(ScriptOutputType.INTEGER,
+            "if redis.call('HSETNX', KEYS[1], 'value', ARGV[1]) == 0 then return 0 end",
+            "redis.call('HMSET', KEYS[1], 'version', ARGV[3], 'expiration', ARGV[2])",
+            "redis.call('PEXPIREAT', KEYS[1], ARGV[2])",
+            "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', '(' .. ARGV[4])",
+            "redis.call('ZADD', KEYS[2], ARGV[2], KEYS[1])",
+            "local latest = redis.call('ZRANGE', KEYS[2], -1, -1, 'WITHSCORES')",
+            "redis.call('PEXPIREAT', KEYS[2], latest[2])",
+            "return 1");
+
+    private static final RedisScript EXPIRE_INDEX = new RedisScript(ScriptOutputType.INTEGER,
+            "local latest = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')",
+            "if not latest[2] then return 0 end",
+            "return redis.call('PEXPIREAT', KEYS[1], latest[2])");
+
+    private static final RedisScript READ_IF_NEWER = new RedisScript(ScriptOutputType.MULTI,
+            "local stored = redis.call('HGET', KEYS[1], 'version')",
+            "if not stored then return {} end",
+            "if stored == ARGV[1] then return {stored} end",
+            "return {stored, redis.call('HGET', KEYS[1], 'value'), redis.call('HGET', KEYS[1], 'expiration')}");
+
+    private static final RedisScript UPDATE = new RedisScript(ScriptOutputType.INTEGER,
+            "local stored = redis.call('HGET', KEYS[1], 'version')",
+            "if not stored then return 0 end",
+            "redis.call('HMSET', KEYS[1], 'value', ARGV[1], 'expiration', ARGV[2], 'version', tostring(tonumber(stored) + 1))",
+            "return 1");
+
+    private static final RedisScript UPDATE_WITH_VERSION = new RedisScript(ScriptOutputType.MULTI,
+            "local stored = redis.call('HGET', KEYS[1], 'version')",
+            "if not stored then return {" + MISSING + "} end",
+            "stored = tonumber(stored)",
+            "if stored ~= tonumber(ARGV[1]) then return {" + VERSION_MISMATCH + ", stored} end",
+            "redis.call('HMSET', KEYS[1], 'value', ARGV[2], 'expiration', ARGV[3], 'version', tostring(stored + 1))",
+            "return {" + UPDATED + ", stored + 1}");
+
+    private static final RedisScript UPDATE_EXPIRATION = new RedisScript(ScriptOutputType.INTEGER,
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end",
+            "redis.call('HSET', KEYS[1], 'expiration', ARGV[1])",
+            "return 1");
+
+    private static final RedisScript DELETE_WITH_VERSION = new RedisScript(ScriptOutputType.MULTI,
+            "local stored = redis.call('HGET', KEYS[1], 'version')",
+            "if not stored then return {" + MISSING + "} end",
+            "stored = tonumber(stored)",
+            "if stored ~= tonumber(ARGV[1]) then return {" + VERSION_MISMATCH + ", stored} end",
+            "redis.call('DEL', KEYS[1])",
+            "return {" + UPDATED + "}");
+
+    private static final List<RedisScript> SCRIPTS = List.of(
+            CREATE, EXPIRE_INDEX, READ_IF_NEWER, UPDATE, UPDATE_WITH_VERSION, UPDATE_EXPIRATION, DELETE_WITH_VERSION);
+
+    private final RedisClusterCommands<String, String> redis;
+    private final RedisClusterAsyncCommands<String, String> asyncRedis;
+
+    public RedisStorageService(RedisClusterCommands<String, String> redis, RedisClusterAsyncCommands<String, String> asyncRedis) {
         this.setContextSize(1024);
         this.redis = redis;
+        this.asyncRedis = asyncRedis;
+    }
+
+    private static String shardTag(String context, int shard) {
+        return "{" + context + "#" + shard + "}";
     }
 
-    private static String key(String context, String key) {
-        return context + ":" + key;
+    private static int shardOf(String key) {
+        return Math.floorMod(key.hashCode(), CONTEXT_SHARDS);
+    }
+
+    static String key(String context, String key) {
+        return shardTag(context, shardOf(key)) + ":" + key;
+    }
+
+    private static String indexKey(String context, int shard) {
+        return shardTag(context, shard) + "#index";
+    }
+
+    private static Range<Long> expiredBefore(long time) {
+        return Range.from(Range.Boundary.unbounded(), Range.Boundary.excluding(time));
     }
 
     @Override
-    public boolean create(String context, String key, String value, Long expiration) {
-        Boolean result = redis.hsetnx(key(context, key), "value", value);
-        if (!result) return false;
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        SCRIPTS.forEach(script -> script.load(redis));
+    }
 
-        redis.hset(key(context, key), "version", INITIAL_VERSION.toString());
-        redis.hset(key(context, key), "expiration", expiration.toString());
-        redis.pexpireat(key(context, key), expiration);
-        return true;
+    @Override
+    public boolean create(String context, String key, String value, Long expiration) {
+        Long result = CREATE.execute(redis, List.of(key(context, key), indexKey(context, shardOf(key))),
+                value, expiration.toString(), INITIAL_VERSION.toString(), Long.toString(System.currentTimeMillis()));
+        return result == 1;
     }
 
     @Override
@@ -54,76 +151,41 @@ public class RedisStorageService extends AbstractStorageService {
 
     @Override
     public Pair<Long, StorageRecord> read(String context, String key, long version) throws IOException {
-        Long storedVersion = getCurrentVersion(context, key);
-        if (storedVersion == null) {
+        List<Object> result = READ_IF_NEWER.execute(redis, key(context, key), Long.toString(version));
+        if (result.isEmpty()) {
             return new Pair<>(null, null);
-        } else if (version == storedVersion) {
-            return new Pair<>(storedVersion, null);
-        } else {
-            StorageRecord value = read(context, key);
-            return new Pair<>(storedVersion, value);
         }
-    }
-
-    private Long getCurrentVersion(String context, String key) {
-        String storedVersionString = redis.hget(key(context, key), "version");
-        if (storedVersionString == null) return null;
 
-        return Long.valueOf(storedVersionString);
+        Long storedVersion = Long.valueOf((String) result.get(0));
+        if (result.size() == 1) {
+            return new Pair<>(storedVersion, null);
+        }
+        Long expiration = Long.valueOf((String) result.get(2));
+        return new Pair<>(storedVersion, new RedisStorageRecord((String) result.get(1), expiration, storedVersion));
     }
 
     @Override
     public boolean update(String context, String key, String value, Long expiration) throws IOException {
-        redis.watch(key(context, key));
-        Long storedVersion = getCurrentVersion(context, key);
-        if (storedVersion == null) {
-            redis.unwatch();
-            return false;
-        }
-
-        redis.multi();
-        redis.hmset(key(context, key), Map.of("value", value, "expiration", Long.toString(expiration), "version", Long.toString(storedVersion + 1)));
-        TransactionResult result = redis.exec();
-        if (result.wasDiscarded()) {
-            throw new IOException("Failed to update the object due to a Redis transaction conflict.");
-        }
-        return true;
+        Long result = UPDATE.execute(redis, key(context, key), value, Long.toString(expiration));
+        return result == 1;
     }
 
     @Override
     public Long updateWithVersion(long version, String context, String key, String value, Long expiration) throws IOException, VersionMismatchException {
-        redis.watch(key(context, key));
-        Long storedVersion = getCurrentVersion(context, key);
-        if (storedVersion == null) {
-            redis.unwatch();
+        List<Object> result = UPDATE_WITH_VERSION.execute(redis, key(context, key), Long.toString(version), value, Long.toString(expiration));
+        long status = (Long) result.get(0);
+        if (status == MISSING) {
             return null;
-        } else if (storedVersion != version) {
-            redis.unwatch();
-            throw new VersionMismatchException(String.format("Expected version to be %d but it was %d", version, storedVersion));
-        } else {
-            redis.multi();
-            redis.hmset(key(context, key), Map.of("value", value, "expiration", Long.toString(expiration), "version", Long.toString(storedVersion + 1)));
-            TransactionResult result = redis.exec();
-            if (result.wasDiscarded()) {
-                throw new IOException("Failed to update the object due to a Redis transaction conflict.");
-            }
-            return storedVersion + 1;
+        } else if (status == VERSION_MISMATCH) {
+            throw new VersionMismatchException(String.format("Expected version to be %d but it was %d", version, (Long) result.get(1)));
         }
+        return (Long) result.get(1);
     }
 
     @Override
     public boolean updateExpiration(String context, String key, Long expiration) throws IOException {
-        redis.watch(key(context, key));
-        Boolean exists = redis.exists(key(context, key)) > 0;
-        if (!exists) return false;
-
-        redis.multi();
-        redis.hset(key(context, key), "expiration", Long.toString(expiration));
-        TransactionResult result = redis.exec();
-        if (result.wasDiscarded()) {
-            throw new IOException("Failed to update the object due to a Redis transaction conflict.");
-        }
-        return true;
+        Long result = UPDATE_EXPIRATION.execute(redis, key(context, key), Long.toString(expiration));
+        return result == 1;
     }
 
     @Override
@@ -133,51 +195,69 @@ public class RedisStorageService extends AbstractStorageService {
 
     @Override
     public boolean deleteWithVersion(long version, String context, String key) throws IOException, VersionMismatchException {
-        redis.watch(key(context, key));
-        Long storedVersion = getCurrentVersion(context, key);
-        if (storedVersion == null) {
-            redis.unwatch();
+        List<Object> result = DELETE_WITH_VERSION.execute(redis, key(context, key), Long.toString(version));
+        long status = (Long) result.get(0);
+        if (status == MISSING) {
             return false;
-        } else if (storedVersion != version) {
-            redis.unwatch();
-            throw new VersionMismatchException(String.format("Expected version to be %d but it was %d", version, storedVersion));
-        } else {
-            redis.multi();
-            redis.del(key(context, key));
-            TransactionResult result = redis.exec();
-            if (result.wasDiscarded()) {
-                throw new IOException("Failed to update the object due to a Redis transaction conflict.");
-            }
+        } else if (status == VERSION_MISMATCH) {
+            throw new VersionMismatchException(String.format("Expected version to be %d but it was %d", version, (Long) result.get(1)));
         }
         return true;
     }
 
     @Override
-    public void reap(String context) {
-        // Don't need to do anything here as Redis will handle key expiry.
+    public void reap(String context) throws IOException {
+        // Redis expires the records themselves; this only drops their keys from the context's indexes
+        Range<Long> expired = expiredBefore(System.currentTimeMillis());
+        List<RedisFuture<?>> pipeline = new ArrayList<>();
+        for (int shard = 0; shard < CONTEXT_SHARDS; shard++) {
+            pipeline.add(asyncRedis.zremrangebyscore(indexKey(context, shard), expired));
+        }
+        awaitPipeline(pipeline);
     }
 
     @Override
-    public void updateContextExpiration(String context, Long expiration) {
-        ScanCursor cursor = ScanCursor.INITIAL;
-        do {
-            KeyScanCursor<String> keyCursor = redis.scan(cursor, ScanArgs.Builder.matches(context + ":"));
-            keyCursor.getKeys().forEach(key -> {
-                redis.pexpireat(key, expiration);
-            });
-            cursor = keyCursor;
-        } while (cursor != ScanCursor.FINISHED);
+    public void updateContextExpiration(String context, Long expiration) throws IOException {
+        reap(context);
+        for (int shard = 0; shard < CONTEXT_SHARDS; shard++) {
+            String index = indexKey(context, shard);
+            // ZSCAN returns every member present for the whole iteration even though scores change under it
+            ScanCursor cursor = ScanCursor.INITIAL;
+            do {
+                ScoredValueScanCursor<String> batch = redis.zscan(index, cursor, ScanArgs.Builder.limit(CONTEXT_BATCH_SIZE));
+                List<String> keys = batch.getValues().stream().map(ScoredValue::getValue).collect(Collectors.toList());
+                if (!keys.isEmpty()) {
+                    List<RedisFuture<?>> pipeline = new ArrayList<>();
+                    keys.forEach(key -> pipeline.add(asyncRedis.pexpireat(key, expiration)));
+                    pipeline.add(asyncRedis.zadd(index, ZAddArgs.Builder.xx(), keys.stream()
+                            .map(key -> ScoredValue.just(expiration, key))
+                            .toArray(ScoredValue[]::new)));
+                    awaitPipeline(pipeline);
+                }
+                cursor = batch;
+            } while (!cursor.isFinished());
+            EXPIRE_INDEX.execute(redis, index);
+        }
     }
 
     @Override
-    public void deleteContext(String context) {
-        ScanCursor cursor = ScanCursor.INITIAL;
-        do {
-            KeyScanCursor<String> keyCursor = redis.scan(cursor, ScanArgs.Builder.matches(context + ":"));
-            keyCursor.getKeys().forEach(key -> {
-                redis.del(key);
-            });
-            cursor = keyCursor;
-        } while (cursor != ScanCursor.FINISHED);
+    public void deleteContext(String context) throws IOException {
+        for (int shard = 0; shard < CONTEXT_SHARDS; shard++) {
+            String index = indexKey(context, shard);
+            List<String> keys = redis.zrange(index, 0, CONTEXT_BATCH_SIZE - 1);
+            while (!keys.isEmpty()) {
+                // A shard's records and index share a hash tag, so the multi-key DEL stays within one cluster slot
+                String[] batch = keys.toArray(new String[0]);
+                awaitPipeline(List.of(asyncRedis.del(batch), asyncRedis.zrem(index, batch)));
+                keys = redis.zrange(index, 0, CONTEXT_BATCH_SIZE - 1);
+            }
+        }
+    }
+
+    private static void awaitPipeline(List<? extends RedisFuture<?>> pipeline) throws IOException {
+        boolean completed = LettuceFutures.awaitAll(CONTEXT_BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS, pipeline.toArray(new RedisFuture[0]));
+        if (!completed) {
+            throw new IOException("Timed out waiting for a batch of Redis context updates");
+        }
     }
 }
@@ -0,0 +1,48 @@
+package uk.gov.ida.notification.session.storage;
+
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+
+/**
+ * A multiplexed, thread-safe connection to a standalone, sentinel-managed or clustered Redis,
+ * exposing only the command sets common to all of them. WATCH/MULTI cannot be shared safely
+ * on it, so atomic read-modify-write operations are done with Lua scripts instead.
+ */
+public class RedisTopologyConnection<V> implements AutoCloseable {
+
+    private final StatefulConnection<String, V> connection;
+    private final RedisClusterCommands<String, V> sync;
+    private final RedisClusterAsyncCommands<String, V> async;
+    private final Runnable clientShutdown;
+
+    public RedisTopologyConnection(StatefulRedisConnection<String, V> connection, Runnable clientShutdown) {
+        this.connection = connection;
+        this.sync = connection.sync();
+        this.async = connection.async();
+        this.clientShutdown = clientShutdown;
+    }
+
+    public RedisTopologyConnection(StatefulRedisClusterConnection<String, V> connection, Runnable clientShutdown) {
+        this.connection = connection;
+        this.sync = connection.sync();
+        this.async = connection.async();
+        this.clientShutdown = clientShutdown;
+    }
+
+    public RedisClusterCommands<String, V> sync() {
+        return sync;
+    }
+
+    public RedisClusterAsyncCommands<String, V> async() {
+        return async;
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+        clientShutdown.run();
+    }
+}
@@ -0,0 +1,68 @@
+package uk.gov.ida.notification.shared.proxy;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import uk.gov.ida.notification.configuration.MetatronCacheConfiguration;
+import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
+
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches metatron responses per entityId so most requests need no call to metatron.
+ *
+ * Once an entry is older than the refresh interval the next lookup still returns it but
+ * triggers a background reload; it is only discarded once older than the expiry, or if a
+ * reload fails past that point. Concurrent lookups of a missing entityId share one request.
+ */
+public class CachingMetatronProxy extends MetatronProxy {
+
+    private final LoadingCache<String, CountryMetadataResponse> cache;
+
+    public CachingMetatronProxy(
+            URI metatronUri,
+            ProxyNodeJsonClient metatronClient,
+            MetatronCacheConfiguration cacheConfiguration,
+            Executor refreshExecutor) {
+        this(metatronUri, metatronClient, cacheConfiguration, refreshExecutor, Ticker.systemTicker());
+    }
+
+    CachingMetatronProxy(
+            URI metatronUri,
+            ProxyNodeJsonClient metatronClient,
+            MetatronCacheConfiguration cacheConfiguration,
+            Executor refreshExecutor,
+            Ticker ticker) {
+        super(metatronUri, metatronClient);
+        this.cache = CacheBuilder.newBuilder()
+                .refreshAfterWrite(cacheConfiguration.getRefreshAfterSeconds(), TimeUnit.SECONDS)
+                .expireAfterWrite(cacheConfiguration.getExpireAfterSeconds(), TimeUnit.SECONDS)
+                .maximumSize(cacheConfiguration.getMaxEntries())
+                .ticker(ticker)
+                .build(CacheLoader.asyncReloading(CacheLoader.from(super::getCountryMetadata), refreshExecutor));
+    }
+
+    @Override
+    public CountryMetadataResponse getCountryMetadata(String entityId) {
+        try {
+            return cache.getUnchecked(entityId);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void invalidate(String entityId) {
+        cache.invalidate(entityId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,109 @@
+package uk.gov.ida.notification.shared.proxy;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import uk.gov.ida.notification.contracts.metadata.MetadataChanges;
+import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
+
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Long-polls metatron for metadata changes and evicts the affected countries from a
+ * {@link CachingMetatronProxy}, so updates are picked up without waiting for the refresh interval.
+ *
+ * The client must allow reads longer than {@link #WAIT_SECONDS}. If metatron cannot tell us
+ * exactly what changed, for instance because the instance answering has never held the version
+ * we last saw, the whole cache is evicted. Repeated evictions, as happen while metatron replicas
+ * disagree, back off exponentially rather than re-polling straight away.
+ */
+public class MetatronChangeWatcher implements Managed {
+
+    public static final long WAIT_SECONDS = 25;
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+    private static final long MIN_RESYNC_DELAY_MILLIS = 1_000;
+    private static final long MAX_RESYNC_DELAY_MILLIS = 60_000;
+    private static final String CHANGES_PATH = "metadata/changes";
+
+    private final URI metatronUri;
+    private final ProxyNodeJsonClient metatronClient;
+    private final CachingMetatronProxy metatronProxy;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("metatron-change-watcher").setDaemon(true).build());
+
+    private volatile boolean running;
+    private String version = "";
+    private int consecutiveResyncs = 0;
+
+    public MetatronChangeWatcher(URI metatronUri, ProxyNodeJsonClient metatronClient, CachingMetatronProxy metatronProxy) {
+        this.metatronUri = metatronUri;
+        this.metatronClient = metatronClient;
+        this.metatronProxy = metatronProxy;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        executor.execute(this::watch);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    private void watch() {
+        while (running) {
+            long delayMillis;
+            try {
+                pollOnce();
+                delayMillis = resyncDelayMillis();
+            } catch (RuntimeException e) {
+                ProxyNodeLogger.logException(e, Level.WARNING, "Failed to poll metatron for metadata changes");
+                delayMillis = RETRY_DELAY_MILLIS;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * No delay after a complete change set or a first resync, then doubling for each further
+     * resync in a row.
+     */
+    long resyncDelayMillis() {
+        if (consecutiveResyncs < 2) {
+            return 0;
+        }
+        int doublings = Math.min(consecutiveResyncs - 2, 16);
+        return Math.min(MIN_RESYNC_DELAY_MILLIS << doublings, MAX_RESYNC_DELAY_MILLIS);
+    }
+
+    void pollOnce() {
+        URI changesUri = UriBuilder
+                .fromUri(metatronUri)
+                .path(CHANGES_PATH)
+                .queryParam("version", version)
+                .queryParam("waitSeconds", WAIT_SECONDS)
+                .build();
+        MetadataChanges changes = metatronClient.get(changesUri, MetadataChanges.class);
+
+        if (changes.isComplete()) {
+            changes.getChangedEntityIds().forEach(metatronProxy::invalidate);
+            consecutiveResyncs = 0;
+        } else {
+            metatronProxy.invalidateAll();
+            consecutiveResyncs++;
+        }
+        version = changes.getVersion();
+    }
+}
@@ -0,0 +1,90 @@
+package uk.gov.ida.notification.shared.proxy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jersey.errors.ErrorMessage;
+import org.slf4j.MDC;
+import uk.gov.ida.common.ExceptionType;
+import uk.gov.ida.exceptions.ApplicationException;
+import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
+import uk.gov.ida.notification.shared.logging.ProxyNodeMDCKey;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Posts JSON to another proxy node service and copies its application/octet-stream response
+ * into an output stream as it arrives, without buffering or decoding the body as a string.
+ * Error responses are read in full, and the service's {@link ErrorMessage} is kept as the cause
+ * of the thrown {@link ApplicationException}.
+ */
+public class ProxyNodeStreamingClient {
+
+    private final Client client;
+    private final ObjectMapper objectMapper;
+    private final IstioHeaderStorage istioHeaderStorage;
+
+    public ProxyNodeStreamingClient(Client client, ObjectMapper objectMapper, IstioHeaderStorage istioHeaderStorage) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.istioHeaderStorage = istioHeaderStorage;
+    }
+
+    public void post(Object postBody, URI uri, OutputStream responseBody) {
+        Invocation.Builder request = client.target(uri).request(MediaType.APPLICATION_OCTET_STREAM_TYPE);
+        getHeaders().forEach(request::header);
+
+        Response response;
+        try {
+            response = request.post(Entity.json(postBody));
+        } catch (ProcessingException e) {
+            throw ApplicationException.createUnauditedException(ExceptionType.NETWORK_ERROR, UUID.randomUUID(), e, uri);
+        }
+
+        try {
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                ExceptionType exceptionType = response.getStatusInfo().getFamily() == Response.Status.Family.CLIENT_ERROR ?
+                        ExceptionType.CLIENT_ERROR : ExceptionType.REMOTE_SERVER_ERROR;
+                throw ApplicationException.createUnauditedException(exceptionType, UUID.randomUUID(), readError(response), uri);
+            }
+            try (InputStream body = response.readEntity(InputStream.class)) {
+                body.transferTo(responseBody);
+            }
+        } catch (IOException | ProcessingException e) {
+            throw ApplicationException.createUnauditedException(ExceptionType.NETWORK_ERROR, UUID.randomUUID(), e, uri);
+        } finally {
+            response.close();
+        }
+    }
+
+    private Throwable readError(Response response) {
+        String body;
+        try {
+            body = response.readEntity(String.class);
+        } catch (ProcessingException e) {
+            return e;
+        }
+        try {
+            ErrorMessage errorMessage = objectMapper.readValue(body, ErrorMessage.class);
+            return new WebApplicationException(errorMessage.getMessage(), response.getStatus());
+        } catch (IOException e) {
+            return new WebApplicationException(body, response.getStatus());
+        }
+    }
+
+    private Map<String, String> getHeaders() {
+        Map<String, String> headers = this.istioHeaderStorage.getIstioHeaders();
+        headers.put(ProxyNodeMDCKey.PROXY_NODE_JOURNEY_ID.name(), MDC.get(ProxyNodeMDCKey.PROXY_NODE_JOURNEY_ID.name()));
+        return headers;
+    }
+}
@@ -0,0 +1,73 @@
+package uk.gov.ida.notification.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jersey.validation.Validators;
+import io.lettuce.core.RedisURI;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RedisTopologyConfigurationTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Validator validator = Validators.newValidator();
+
+    @Test
+    public void standaloneNeedsNoNodes() throws Exception {
+        assertThat(violations("{\"mode\": \"STANDALONE\"}")).isEmpty();
+    }
+
+    @Test
+    public void sentinelModeNeedsSentinelNodes() throws Exception {
+        assertThat(violations("{\"mode\": \"SENTINEL\", \"sentinelMasterId\": \"mymaster\"}"))
+                .containsExactly("SENTINEL mode needs at least one sentinel in nodes and a sentinelMasterId");
+    }
+
+    @Test
+    public void sentinelModeNeedsMasterId() throws Exception {
+        assertThat(violations("{\"mode\": \"SENTINEL\", \"nodes\": [\"redis://sentinel:26379\"]}"))
+                .containsExactly("SENTINEL mode needs at least one sentinel in nodes and a sentinelMasterId");
+    }
+
+    @Test
+    public void sentinelModeWithNodesAndMasterIdIsValid() throws Exception {
+        RedisTopologyConfiguration configuration = read("{\"mode\": \"SENTINEL\", \"nodes\": [\"redis://sentinel-a:26379\", \"redis://sentinel-b:26379\"], \"sentinelMasterId\": \"mymaster\"}");
+
+        assertThat(validator.validate(configuration)).isEmpty();
+        RedisURI masterUri = configuration.getMasterUri(RedisURI.create("redis://localhost:6379/2"));
+        assertThat(masterUri.getSentinelMasterId()).isEqualTo("mymaster");
+        assertThat(masterUri.getSentinels()).hasSize(2);
+        assertThat(masterUri.getDatabase()).isEqualTo(2);
+    }
+
+    @Test
+    public void unknownReadFromIsRejected() throws Exception {
+        assertThat(violations("{\"readFrom\": \"anywhere\"}"))
+                .containsExactly("readFrom must be one of master, masterPreferred, slave, slavePreferred or nearest");
+    }
+
+    @Test
+    public void unvalidatedSentinelConfigurationFailsClearlyWhenResolvingMaster() throws Exception {
+        RedisTopologyConfiguration configuration = read("{\"mode\": \"SENTINEL\"}");
+
+        assertThatThrownBy(() -> configuration.getMasterUri(RedisURI.create("redis://localhost:6379")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("sentinelMasterId");
+    }
+
+    private Set<String> violations(String json) throws Exception {
+        return validator.validate(read(json)).stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.toSet());
+    }
+
+    private RedisTopologyConfiguration read(String json) throws Exception {
+        return mapper.readValue(json, RedisTopologyConfiguration.class);
+    }
+}
@@ -0,0 +1,124 @@
+package uk.gov.ida.notification.saml;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import uk.gov.ida.notification.SamlInitializedTest;
+import uk.gov.ida.notification.configuration.SignatureSelfVerificationConfiguration;
+import uk.gov.ida.notification.configuration.SigningServiceConfiguration;
+import uk.gov.ida.notification.helpers.TestKeyPair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchingSignatureCreatorTest extends SamlInitializedTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+    private BatchingSignatureCreator signatureCreator;
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+        if (signatureCreator != null) {
+            signatureCreator.stop();
+        }
+    }
+
+    @Test
+    public void shouldProduceValidSignaturesForConcurrentCallers() throws Exception {
+        TestKeyPair keyPair = new TestKeyPair();
+        signatureCreator = new BatchingSignatureCreator(new SigningServiceConfiguration(true, 2, 50, 4, 5_000L));
+        signatureCreator.start();
+        SamlObjectSigner signer = new SamlObjectSigner(
+                keyPair.getX509Credential(),
+                SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256,
+                () -> null,
+                new SignatureSelfVerificationConfiguration(),
+                signatureCreator);
+
+        List<Future<AuthnRequest>> signed = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String requestId = "request-" + i;
+            signed.add(callers.submit(() -> {
+                AuthnRequest authnRequest = SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME);
+                signer.sign(authnRequest, requestId);
+                return authnRequest;
+            }));
+        }
+
+        for (Future<AuthnRequest> request : signed) {
+            SignatureValidator.validate(request.get(10, TimeUnit.SECONDS).getSignature(), keyPair.getX509Credential());
+        }
+    }
+
+    @Test
+    public void shouldRejectSignaturesWhenQueueIsFull() throws Exception {
+        signatureCreator = new BatchingSignatureCreator(new SigningServiceConfiguration(true, 1, 1, 1, 5_000L));
+
+        Future<Void> queued = callers.submit(this::createSignature);
+        while (signatureCreator.getQueueDepth() == 0) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+
+        SignatureException exception = assertThrows(SignatureException.class, () -> signatureCreator.createSignature(newSignature()));
+        assertThat(exception.getMessage()).isEqualTo("Signing queue is full");
+
+        signatureCreator.stop();
+        ExecutionException stopped = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertThat(stopped.getCause()).hasMessage("Signing service stopped");
+    }
+
+    @Test
+    public void shouldGiveUpWhenSigningTakesLongerThanTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        signatureCreator = new BatchingSignatureCreator(new SigningServiceConfiguration(true, 1, 10, 1, 50L), signature -> awaitQuietly(release));
+        signatureCreator.start();
+
+        SignatureException exception = assertThrows(SignatureException.class, () -> signatureCreator.createSignature(newSignature()));
+        assertThat(exception.getMessage()).isEqualTo("Timed out waiting for a signing session");
+
+        release.countDown();
+    }
+
+    @Test
+    public void shouldPassSigningFailuresBackToCaller() throws Exception {
+        SignatureException failure = new SignatureException("HSM unavailable");
+        signatureCreator = new BatchingSignatureCreator(new SigningServiceConfiguration(true, 1, 10, 1, 5_000L), signature -> {
+            throw failure;
+        });
+        signatureCreator.start();
+
+        SignatureException exception = assertThrows(SignatureException.class, () -> signatureCreator.createSignature(newSignature()));
+        assertThat(exception).isSameAs(failure);
+    }
+
+    private Void createSignature() throws SignatureException {
+        signatureCreator.createSignature(newSignature());
+        return null;
+    }
+
+    private static Signature newSignature() {
+        return SamlBuilder.build(Signature.DEFAULT_ELEMENT_NAME);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package uk.gov.ida.notification.saml;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureException;
+import org.opensaml.xmlsec.signature.support.SignatureValidator;
+import org.opensaml.xmlsec.signature.support.Signer;
+import uk.gov.ida.notification.SamlInitializedTest;
+import uk.gov.ida.notification.configuration.SignatureSelfVerificationConfiguration;
+import uk.gov.ida.notification.helpers.TestKeyPair;
+
+import java.security.PrivateKey;
+import java.security.ProviderException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HsmKeyPoolTest extends SamlInitializedTest {
+
+    private static final String PRIMARY_LABEL = "signing_key";
+    private static final String FAILOVER_LABEL = "signing_key_failover";
+
+    private final AtomicInteger keysLoaded = new AtomicInteger();
+    private final AtomicBoolean primaryAvailable = new AtomicBoolean(true);
+    private TestKeyPair keyPair;
+
+    @Before
+    public void setUp() throws Exception {
+        keyPair = new TestKeyPair();
+    }
+
+    @Test
+    public void shouldWarmUpEveryKeyHandleWhenConnecting() throws Exception {
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL), 3, 30);
+
+        hsmKeyPool.connect();
+
+        assertThat(keysLoaded.get()).isEqualTo(3);
+        assertThat(hsmKeyPool.isConnected()).isTrue();
+        assertThat(hsmKeyPool.getActiveKeyLabel()).isEqualTo(PRIMARY_LABEL);
+    }
+
+    @Test
+    public void shouldSignWithPooledKeyHandle() throws Exception {
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL), 2, 30);
+        hsmKeyPool.connect();
+
+        AuthnRequest authnRequest = signWith(hsmKeyPool);
+
+        SignatureValidator.validate(authnRequest.getSignature(), keyPair.getX509Credential());
+    }
+
+    @Test
+    public void shouldFailOverToSecondKeyLabelWhenFirstIsUnavailable() throws Exception {
+        primaryAvailable.set(false);
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL, FAILOVER_LABEL), 2, 30);
+
+        hsmKeyPool.connect();
+
+        assertThat(hsmKeyPool.getActiveKeyLabel()).isEqualTo(FAILOVER_LABEL);
+    }
+
+    @Test
+    public void shouldNotUseKeyThatDoesNotMatchCertificate() throws Exception {
+        TestKeyPair otherKeyPair = new TestKeyPair("test_certificate_b.crt", "test_private_key_b.pk8");
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(label -> otherKeyPair.privateKey, keyPair.certificate, List.of(PRIMARY_LABEL), 2, 30);
+
+        assertThrows(SignatureException.class, hsmKeyPool::connect);
+        assertThat(hsmKeyPool.isConnected()).isFalse();
+    }
+
+    @Test
+    public void shouldReconnectAndRetryWhenSigningFailsInTheProvider() throws Exception {
+        AtomicBoolean sessionDropped = new AtomicBoolean(true);
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL), 2, 30, signature -> {
+            if (sessionDropped.getAndSet(false)) {
+                throw new SignatureException("Signature computation error", new ProviderException("HSM session closed"));
+            }
+            Signer.signObject(signature);
+        });
+        hsmKeyPool.connect();
+
+        AuthnRequest authnRequest = signWith(hsmKeyPool);
+
+        assertThat(keysLoaded.get()).isEqualTo(4);
+        SignatureValidator.validate(authnRequest.getSignature(), keyPair.getX509Credential());
+    }
+
+    @Test
+    public void shouldNotReconnectWhenSigningFailsOutsideTheProvider() throws Exception {
+        AtomicInteger signingAttempts = new AtomicInteger();
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL), 1, 30, signature -> {
+            if (signingAttempts.incrementAndGet() == 1) {
+                throw new SignatureException("Signature has no DOM to sign");
+            }
+            Signer.signObject(signature);
+        });
+        hsmKeyPool.connect();
+
+        assertThrows(SignatureException.class, () -> signWith(hsmKeyPool));
+        AuthnRequest authnRequest = signWith(hsmKeyPool);
+
+        assertThat(signingAttempts.get()).isEqualTo(2);
+        assertThat(keysLoaded.get()).isEqualTo(1);
+        SignatureValidator.validate(authnRequest.getSignature(), keyPair.getX509Credential());
+    }
+
+    @Test
+    public void shouldKeepFailoverPoolWhileFirstKeyLabelIsStillUnavailable() throws Exception {
+        primaryAvailable.set(false);
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL, FAILOVER_LABEL), 2, 30);
+        hsmKeyPool.connect();
+        PrivateKey failoverKey = hsmKeyPool.getActiveKey();
+
+        hsmKeyPool.probe();
+
+        assertThat(hsmKeyPool.getActiveKeyLabel()).isEqualTo(FAILOVER_LABEL);
+        assertThat(hsmKeyPool.getActiveKey()).isSameAs(failoverKey);
+        assertThat(keysLoaded.get()).isEqualTo(2);
+        SignatureValidator.validate(signWith(hsmKeyPool).getSignature(), keyPair.getX509Credential());
+    }
+
+    @Test
+    public void shouldKeepFailoverPoolWhenFirstKeyLabelOnlyPartlyLoads() throws Exception {
+        primaryAvailable.set(false);
+        AtomicInteger primaryLoads = new AtomicInteger();
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(label -> {
+            if (PRIMARY_LABEL.equals(label) && (!primaryAvailable.get() || primaryLoads.incrementAndGet() > 1)) {
+                return null;
+            }
+            return softwareKey(label);
+        }, keyPair.certificate, List.of(PRIMARY_LABEL, FAILOVER_LABEL), 2, 30);
+        hsmKeyPool.connect();
+
+        primaryAvailable.set(true);
+        hsmKeyPool.probe();
+
+        assertThat(hsmKeyPool.getActiveKeyLabel()).isEqualTo(FAILOVER_LABEL);
+        SignatureValidator.validate(signWith(hsmKeyPool).getSignature(), keyPair.getX509Credential());
+    }
+
+    @Test
+    public void shouldReturnToFirstKeyLabelOnceItIsAvailableAgain() throws Exception {
+        primaryAvailable.set(false);
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL, FAILOVER_LABEL), 2, 30);
+        hsmKeyPool.connect();
+
+        primaryAvailable.set(true);
+        hsmKeyPool.probe();
+
+        assertThat(hsmKeyPool.getActiveKeyLabel()).isEqualTo(PRIMARY_LABEL);
+    }
+
+    @Test
+    public void shouldReconnectOnProbeAfterAllKeyLabelsWereUnavailable() throws Exception {
+        primaryAvailable.set(false);
+        HsmKeyPool hsmKeyPool = new HsmKeyPool(this::softwareKey, keyPair.certificate, List.of(PRIMARY_LABEL), 2, 30);
+        assertThrows(SignatureException.class, hsmKeyPool::connect);
+
+        primaryAvailable.set(true);
+        hsmKeyPool.probe();
+
+        assertThat(hsmKeyPool.isConnected()).isTrue();
+    }
+
+    private AuthnRequest signWith(HsmKeyPool hsmKeyPool) throws Exception {
+        SamlObjectSigner signer = new SamlObjectSigner(
+                keyPair.getX509Credential(),
+                SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256,
+                () -> null,
+                new SignatureSelfVerificationConfiguration(),
+                hsmKeyPool);
+        AuthnRequest authnRequest = SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME);
+        signer.sign(authnRequest, "response-id");
+        return authnRequest;
+    }
+
+    // Stands in for the HSM provider, serving the software test key under either label
+    private PrivateKey softwareKey(String keyLabel) {
+        if (PRIMARY_LABEL.equals(keyLabel) && !primaryAvailable.get()) {
+            return null;
+        }
+        keysLoaded.incrementAndGet();
+        return keyPair.privateKey;
+    }
+}
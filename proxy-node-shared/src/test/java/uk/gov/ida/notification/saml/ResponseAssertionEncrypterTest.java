@@ -9,6 +9,7 @@ import org.opensaml.security.credential.BasicCredential;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.security.x509.X509Credential;
+import org.opensaml.xmlsec.signature.KeyInfo;
 import uk.gov.ida.notification.SamlInitializedTest;
 import uk.gov.ida.notification.helpers.TestKeyPair;
 import uk.gov.ida.saml.core.test.builders.AssertionBuilder;
@@ -40,6 +41,25 @@ public class ResponseAssertionEncrypterTest extends SamlInitializedTest {
         assertThat(0).isEqualTo(encryptedResponse.getAssertions().size());
     }
 
+    @Test
+    public void shouldGiveEachEncryptedKeyItsOwnKeyInfoWhenReused() throws Throwable {
+        TestKeyPair testKeyPair = new TestKeyPair();
+        BasicCredential decryptionCredential = new BasicCredential(testKeyPair.publicKey, testKeyPair.privateKey);
+        ResponseAssertionEncrypter encrypter = new ResponseAssertionEncrypter(new BasicX509Credential(testKeyPair.certificate));
+
+        Response first = encrypter.encrypt(ResponseBuilder.aResponse().addAssertion(AssertionBuilder.anAssertion().withId("first").buildUnencrypted()).build());
+        Response second = encrypter.encrypt(ResponseBuilder.aResponse().addAssertion(AssertionBuilder.anAssertion().withId("second").buildUnencrypted()).build());
+
+        KeyInfo firstKeyInfo = first.getEncryptedAssertions().get(0).getEncryptedData().getKeyInfo().getEncryptedKeys().get(0).getKeyInfo();
+        KeyInfo secondKeyInfo = second.getEncryptedAssertions().get(0).getEncryptedData().getKeyInfo().getEncryptedKeys().get(0).getKeyInfo();
+
+        assertThat(secondKeyInfo).isNotSameAs(firstKeyInfo);
+        assertThat(firstKeyInfo.getX509Datas()).hasSize(1);
+        assertThat(firstKeyInfo.getKeyValues()).hasSize(1);
+        assertThat(decryptAssertion(first.getEncryptedAssertions().get(0), decryptionCredential).getID()).isEqualTo("first");
+        assertThat(decryptAssertion(second.getEncryptedAssertions().get(0), decryptionCredential).getID()).isEqualTo("second");
+    }
+
     private static Assertion decryptAssertion(EncryptedAssertion encryptedAssertion, Credential credential) throws Exception {
         DecrypterFactory decrypterFactory = new DecrypterFactory();
         Decrypter decrypter = decrypterFactory.createDecrypter(Collections.singletonList(credential));
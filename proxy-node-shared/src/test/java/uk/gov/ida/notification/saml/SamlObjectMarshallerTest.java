@@ -8,7 +8,10 @@ import org.w3c.dom.Element;
 import uk.gov.ida.notification.SamlInitializedTest;
 
 import javax.xml.namespace.QName;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.Base64;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -31,6 +34,37 @@ public class SamlObjectMarshallerTest extends SamlInitializedTest {
         assertThat(expectedIssuerXML).isEqualTo(issuerXML);
     }
 
+    @Test
+    public void shouldMarshallSamlObjectToBytes() {
+        Issuer issuer = buildXmlObject(DEFAULT_ELEMENT_NAME, ENTITY, ISSUER);
+
+        byte[] issuerXML = MARSHALLER.transformToBytes(issuer);
+
+        String expectedIssuerXML = buildExpectedXmlObjectFormat(DEFAULT_ELEMENT_NAME, ENTITY, ISSUER);
+        assertThat(new String(issuerXML, StandardCharsets.UTF_8)).isEqualTo(expectedIssuerXML);
+    }
+
+    @Test
+    public void shouldMarshallSamlObjectToBase64() {
+        Issuer issuer = buildXmlObject(DEFAULT_ELEMENT_NAME, ENTITY, ISSUER);
+
+        String encodedIssuerXML = MARSHALLER.transformToBase64(issuer);
+
+        String expectedIssuerXML = buildExpectedXmlObjectFormat(DEFAULT_ELEMENT_NAME, ENTITY, ISSUER);
+        assertThat(encodedIssuerXML).isEqualTo(Base64.getEncoder().encodeToString(expectedIssuerXML.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void shouldMarshallSamlObjectToStream() {
+        Issuer issuer = buildXmlObject(DEFAULT_ELEMENT_NAME, ENTITY, "an-issuer-\u00e9");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        MARSHALLER.writeTo(issuer, output);
+
+        String expectedIssuerXML = buildExpectedXmlObjectFormat(DEFAULT_ELEMENT_NAME, ENTITY, "an-issuer-\u00e9");
+        assertThat(output.toByteArray()).isEqualTo(expectedIssuerXML.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Test
     public void shouldMarshallSamlObject() throws Throwable {
         Issuer issuer = buildXmlObject(DEFAULT_ELEMENT_NAME, ENTITY, ISSUER);
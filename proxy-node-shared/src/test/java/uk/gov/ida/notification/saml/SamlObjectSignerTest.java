@@ -10,16 +10,20 @@ import org.opensaml.saml.saml2.core.AuthnRequest;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureConstants;
+import org.opensaml.xmlsec.signature.support.SignatureException;
 import org.opensaml.xmlsec.signature.support.SignatureValidator;
 import org.slf4j.LoggerFactory;
 import uk.gov.ida.notification.SamlInitializedTest;
+import uk.gov.ida.notification.configuration.SignatureSelfVerificationConfiguration;
 import uk.gov.ida.notification.helpers.TestKeyPair;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLogger;
 import uk.gov.ida.notification.shared.logging.ProxyNodeMDCKey;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -59,6 +63,40 @@ public class SamlObjectSignerTest extends SamlInitializedTest {
         SignatureValidator.validate(signature, SIGNING_CREDENTIAL);
     }
 
+    @Test
+    public void shouldRejectSignatureThatFailsSelfVerificationByDefault() throws Exception {
+        SamlObjectSigner signer = new SamlObjectSigner(mismatchedCredential(), SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256, null);
+        AuthnRequest authnRequest = SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME);
+
+        assertThrows(SignatureException.class, () -> signer.sign(authnRequest, "response-id"));
+    }
+
+    @Test
+    public void shouldSkipSelfVerificationWhenPolicyIsOff() throws Exception {
+        SamlObjectSigner signer = new SamlObjectSigner(
+                mismatchedCredential(),
+                SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256,
+                null,
+                new SignatureSelfVerificationConfiguration(SignatureSelfVerificationConfiguration.Policy.OFF, 0.0));
+        AuthnRequest authnRequest = SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME);
+
+        signer.sign(authnRequest, "response-id");
+
+        assertThat(authnRequest.getSignature()).isNotNull();
+    }
+
+    @Test
+    public void shouldVerifyEverySignatureWhenSampledAtOneHundredPercent() throws Exception {
+        SamlObjectSigner signer = new SamlObjectSigner(
+                mismatchedCredential(),
+                SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256,
+                null,
+                new SignatureSelfVerificationConfiguration(SignatureSelfVerificationConfiguration.Policy.SAMPLED, 100.0));
+        AuthnRequest authnRequest = SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME);
+
+        assertThrows(SignatureException.class, () -> signer.sign(authnRequest, "response-id"));
+    }
+
     @Test
     public void shouldLogKeyHandleWhenKeyHandleIsNotNull() throws Exception {
         LoggingUtil.hijackJDKLogging();
@@ -79,6 +117,30 @@ public class SamlObjectSignerTest extends SamlInitializedTest {
         assertThat(mdcPropertyMap.get(ProxyNodeMDCKey.HSM_KEY_HANDLE.name())).isEqualTo("99");
     }
 
+    @Test
+    public void shouldLogTheKeyHandleCurrentAtSigningTime() throws Exception {
+        AtomicLong keyHandle = new AtomicLong(1);
+        SamlObjectSigner samlObjectSigner = new SamlObjectSigner(SIGNING_CREDENTIAL, SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256,
+                keyHandle::get, new SignatureSelfVerificationConfiguration(), SignatureCreator.DIRECT);
+        LoggingUtil.hijackJDKLogging();
+
+        Appender<ILoggingEvent> appender = mock(Appender.class);
+        Logger logger = (Logger) LoggerFactory.getLogger(ProxyNodeLogger.class);
+        logger.addAppender(appender);
+
+        samlObjectSigner.sign(SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME), "response-id");
+        // e.g. the HSM key pool has reconnected or failed over to another key label
+        keyHandle.set(2);
+        samlObjectSigner.sign(SamlBuilder.build(AuthnRequest.DEFAULT_ELEMENT_NAME), "response-id");
+
+        ArgumentCaptor<ILoggingEvent> loggingEventArgumentCaptor = ArgumentCaptor.forClass(ILoggingEvent.class);
+        verify(appender, times(2)).doAppend(loggingEventArgumentCaptor.capture());
+
+        assertThat(loggingEventArgumentCaptor.getAllValues())
+                .extracting(event -> event.getMDCPropertyMap().get(ProxyNodeMDCKey.HSM_KEY_HANDLE.name()))
+                .containsExactly("1", "2");
+    }
+
     @Test
     public void shouldNotLogKeyHandleWhenKeyHandleIsNull() throws Exception {
         final SamlObjectSigner samlObjectSigner = new SamlObjectSigner(SIGNING_CREDENTIAL, SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256, null);
@@ -99,4 +161,9 @@ public class SamlObjectSignerTest extends SamlInitializedTest {
 
         assertThat(mdcPropertyMap).doesNotContainKey(ProxyNodeMDCKey.HSM_KEY_HANDLE.name());
     }
+
+    private static BasicX509Credential mismatchedCredential() throws Exception {
+        TestKeyPair otherKeyPair = new TestKeyPair("test_certificate_b.crt", "test_private_key_b.pk8");
+        return new BasicX509Credential(otherKeyPair.certificate, TEST_KEY_PAIR.privateKey);
+    }
 }
@@ -0,0 +1,109 @@
+package uk.gov.ida.notification.saml.validation.components;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.saml.common.SAMLObject;
+import se.litsec.opensaml.saml2.common.response.MessageReplayChecker;
+import se.litsec.opensaml.saml2.common.response.MessageReplayException;
+import uk.gov.ida.notification.MutableClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class RecentIdMessageReplayCheckerTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(5);
+
+    private final RecordingReplayChecker authoritativeChecker = new RecordingReplayChecker();
+    private MutableClock clock;
+    private RecentIdMessageReplayChecker checker;
+
+    @Before
+    public void setUp() {
+        clock = new MutableClock();
+        checker = new RecentIdMessageReplayChecker(authoritativeChecker, clock, WINDOW, 1000);
+    }
+
+    @Test
+    public void newIdIsRecordedInTheAuthoritativeCacheBeforeBeingAccepted() throws Exception {
+        checker.checkReplay("id-1");
+
+        assertThat(authoritativeChecker.checked).containsExactly("id-1");
+    }
+
+    @Test
+    public void replayOfAnIdAcceptedHereIsRejectedLocally() throws Exception {
+        checker.checkReplay("id-1");
+
+        assertThatThrownBy(() -> checker.checkReplay("id-1")).isInstanceOf(MessageReplayException.class);
+        assertThat(authoritativeChecker.checked).containsExactly("id-1");
+    }
+
+    @Test
+    public void replayFirstSeenByAnotherInstanceIsRejected() {
+        authoritativeChecker.seen.add("id-1");
+
+        assertThatThrownBy(() -> checker.checkReplay("id-1")).isInstanceOf(MessageReplayException.class);
+        assertThatThrownBy(() -> checker.checkReplay("id-1")).isInstanceOf(MessageReplayException.class);
+        assertThat(authoritativeChecker.checked).containsExactly("id-1", "id-1");
+    }
+
+    @Test
+    public void idsBeyondTheLocalCapAreLeftToTheAuthoritativeCache() throws Exception {
+        checker = new RecentIdMessageReplayChecker(authoritativeChecker, clock, WINDOW, 2);
+        checker.checkReplay("id-1");
+        checker.checkReplay("id-2");
+        checker.checkReplay("id-3");
+
+        assertThatThrownBy(() -> checker.checkReplay("id-2")).isInstanceOf(MessageReplayException.class);
+        assertThatThrownBy(() -> checker.checkReplay("id-3")).isInstanceOf(MessageReplayException.class);
+        assertThat(authoritativeChecker.checked).containsExactly("id-1", "id-2", "id-3", "id-3");
+    }
+
+    @Test
+    public void idsAreForgottenAfterTwoReplayWindows() throws Exception {
+        checker.checkReplay("id-1");
+
+        clock.advance(WINDOW);
+        assertThatThrownBy(() -> checker.checkReplay("id-1")).isInstanceOf(MessageReplayException.class);
+        assertThat(authoritativeChecker.checked).containsExactly("id-1");
+
+        clock.advance(WINDOW.multipliedBy(2));
+        authoritativeChecker.seen.clear();
+        checker.checkReplay("id-1");
+        assertThat(authoritativeChecker.checked).containsExactly("id-1", "id-1");
+    }
+
+    @Test
+    public void unsupportedObjectsAreRejected() {
+        SAMLObject object = mock(SAMLObject.class);
+
+        assertThatThrownBy(() -> checker.checkReplay(object)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static class RecordingReplayChecker implements MessageReplayChecker {
+
+        private final Set<String> seen = new HashSet<>();
+        private final List<String> checked = new ArrayList<>();
+
+        @Override
+        public void checkReplay(String id) throws MessageReplayException {
+            checked.add(id);
+            if (!seen.add(id)) {
+                throw new MessageReplayException("Replay of " + id);
+            }
+        }
+
+        @Override
+        public void checkReplay(SAMLObject object) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
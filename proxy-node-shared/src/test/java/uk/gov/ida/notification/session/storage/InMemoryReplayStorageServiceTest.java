@@ -0,0 +1,132 @@
+package uk.gov.ida.notification.session.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opensaml.storage.ReplayCache;
+import org.opensaml.storage.VersionMismatchException;
+import uk.gov.ida.notification.MutableClock;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryReplayStorageServiceTest {
+
+    private static final String CONTEXT = "context";
+    private static final long TTL = 60_000;
+
+    private MutableClock clock;
+    private InMemoryReplayStorageService storageService;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new MutableClock();
+        storageService = new InMemoryReplayStorageService(64, clock);
+        storageService.setId("test-storage");
+        storageService.initialize();
+    }
+
+    @Test
+    public void createStoresRecordOnlyOnce() throws IOException {
+        assertThat(storageService.create(CONTEXT, "key", "x", expiry())).isTrue();
+        assertThat(storageService.create(CONTEXT, "key", "x", expiry())).isFalse();
+        assertThat(storageService.create("other", "key", "x", expiry())).isTrue();
+
+        assertThat(storageService.read(CONTEXT, "key").getExpiration()).isEqualTo(expiry());
+        assertThat(storageService.read(CONTEXT, "missing")).isNull();
+    }
+
+    @Test
+    public void recordsExpireLazily() throws IOException {
+        storageService.create(CONTEXT, "key", "x", expiry());
+
+        clock.advance(Duration.ofMillis(TTL));
+
+        assertThat(storageService.read(CONTEXT, "key")).isNull();
+        assertThat(storageService.create(CONTEXT, "key", "x", expiry())).isTrue();
+    }
+
+    @Test
+    public void createFailsOnceFullOfLiveRecordsButReclaimsExpiredOnes() throws IOException {
+        List<String> accepted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            try {
+                if (storageService.create(CONTEXT, "key-" + i, "x", expiry())) {
+                    accepted.add("key-" + i);
+                }
+            } catch (IOException e) {
+                assertThat(e).hasMessage("Replay cache is full");
+            }
+        }
+        // 1000 keys fill every one of the 16 segments to its share of the capacity
+        assertThat(accepted).hasSize(64);
+
+        clock.advance(Duration.ofMillis(TTL));
+
+        for (String key : accepted) {
+            assertThat(storageService.create(CONTEXT, key, "x", expiry())).isTrue();
+        }
+        assertThatThrownBy(() -> storageService.create(CONTEXT, "key-1000", "x", expiry()))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void recordsSurviveExpiredNeighboursBeingFreed() throws Exception {
+        storageService = new InMemoryReplayStorageService(1024, clock);
+        storageService.setId("large-test-storage");
+        storageService.initialize();
+        for (int i = 0; i < 32; i++) {
+            storageService.create(CONTEXT, "short-" + i, "x", clock.millis() + 1);
+            storageService.create(CONTEXT, "long-" + i, "x", expiry());
+        }
+
+        clock.advance(Duration.ofMillis(1));
+        storageService.reap(CONTEXT);
+
+        for (int i = 0; i < 32; i++) {
+            assertThat(storageService.read(CONTEXT, "short-" + i)).isNull();
+            assertThat(storageService.read(CONTEXT, "long-" + i)).isNotNull();
+        }
+    }
+
+    @Test
+    public void deleteAndVersionedOperationsActOnLiveRecords() throws Exception {
+        storageService.create(CONTEXT, "key", "x", expiry());
+
+        assertThat(storageService.updateWithVersion(1, CONTEXT, "key", "x", expiry() + 1)).isEqualTo(1L);
+        assertThatThrownBy(() -> storageService.deleteWithVersion(2, CONTEXT, "key")).isInstanceOf(VersionMismatchException.class);
+        assertThat(storageService.delete(CONTEXT, "key")).isTrue();
+        assertThat(storageService.delete(CONTEXT, "key")).isFalse();
+        assertThat(storageService.create(CONTEXT, "key", "x", expiry())).isTrue();
+    }
+
+    @Test
+    public void deleteContextOnlyRemovesThatContext() throws IOException {
+        storageService.create(CONTEXT, "key", "x", expiry());
+        storageService.create("other", "key", "x", expiry());
+
+        storageService.deleteContext(CONTEXT);
+
+        assertThat(storageService.read(CONTEXT, "key")).isNull();
+        assertThat(storageService.read("other", "key")).isNotNull();
+    }
+
+    @Test
+    public void detectsReplaysThroughReplayCache() throws Exception {
+        ReplayCache replayCache = new ReplayCache();
+        replayCache.setId("test-replay-cache");
+        replayCache.setStorage(storageService);
+        replayCache.initialize();
+
+        assertThat(replayCache.check(CONTEXT, "message-id", expiry())).isTrue();
+        assertThat(replayCache.check(CONTEXT, "message-id", expiry())).isFalse();
+    }
+
+    private long expiry() {
+        return clock.millis() + TTL;
+    }
+}
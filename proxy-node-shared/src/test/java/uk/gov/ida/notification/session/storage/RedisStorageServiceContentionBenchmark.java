@@ -0,0 +1,137 @@
+package uk.gov.ida.notification.session.storage;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Manual throughput harness for {@link RedisStorageService} under contention. Not part of the unit suite;
+ * run it with {@code ./gradlew :proxy-node-shared:redisStorageBenchmark}, optionally passing
+ * {@code -Pargs="redis://host:port threads operationsPerThread"} to point it at a real Redis.
+ * Correctness under contention is covered by {@link RedisStorageServiceTest}.
+ */
+public class RedisStorageServiceContentionBenchmark {
+
+    private static final String CONTEXT = "benchmark";
+    private static final long EXPIRATION_MILLIS = 600_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int operationsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        RedisServer embeddedServer = null;
+        String redisUri;
+        if (args.length > 0) {
+            redisUri = args[0];
+        } else {
+            int port = freePort();
+            embeddedServer = new RedisServer(port);
+            embeddedServer.start();
+            redisUri = "redis://localhost:" + port;
+        }
+
+        RedisClient client = RedisClient.create(redisUri);
+        try (StatefulRedisConnection<String, String> connection = client.connect()) {
+            RedisStorageService storageService = new RedisStorageService(connection.sync(), connection.async());
+            storageService.setId("contention-benchmark");
+            storageService.initialize();
+
+            // Warm up the scripts and the JIT before measuring
+            run("warm-up", threads, operationsPerThread / 10, thread -> createDistinct(storageService, "warm-up-" + thread, operationsPerThread / 10));
+            connection.sync().flushdb();
+
+            run("create (distinct keys)", threads, operationsPerThread,
+                    thread -> createDistinct(storageService, "thread-" + thread, operationsPerThread));
+            run("create (same key)", threads, operationsPerThread,
+                    thread -> createSame(storageService, operationsPerThread));
+
+            storageService.create(CONTEXT, "counter", "0", expiration());
+            run("updateWithVersion (one hot key)", threads, operationsPerThread,
+                    thread -> incrementRepeatedly(storageService, operationsPerThread));
+
+            storageService.destroy();
+            connection.sync().flushdb();
+        } finally {
+            client.shutdown();
+            if (embeddedServer != null) {
+                embeddedServer.stop();
+            }
+        }
+    }
+
+    private static void run(String name, int threads, int operationsPerThread, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            workers.add(() -> worker.run(thread));
+        }
+
+        long start = System.nanoTime();
+        int conflicts = 0;
+        for (Future<Integer> result : executor.invokeAll(workers)) {
+            conflicts += result.get();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        executor.shutdown();
+
+        long operations = (long) threads * operationsPerThread;
+        System.out.printf("%-32s %8d ops by %3d threads in %6d ms (%8d ops/s, %6d version conflicts)%n",
+                name, operations, threads, elapsedMillis, operations * 1000L / elapsedMillis, conflicts);
+    }
+
+    private static int createDistinct(RedisStorageService storageService, String prefix, int operations) throws IOException {
+        for (int i = 0; i < operations; i++) {
+            storageService.create(CONTEXT, prefix + ":" + i, "value", expiration());
+        }
+        return 0;
+    }
+
+    private static int createSame(RedisStorageService storageService, int operations) throws IOException {
+        for (int i = 0; i < operations; i++) {
+            storageService.create(CONTEXT, "same", "value", expiration());
+        }
+        return 0;
+    }
+
+    private static int incrementRepeatedly(RedisStorageService storageService, int updates) throws IOException {
+        int conflicts = 0;
+        for (int done = 0; done < updates; ) {
+            StorageRecord current = storageService.read(CONTEXT, "counter");
+            String next = Integer.toString(Integer.parseInt(current.getValue()) + 1);
+            try {
+                storageService.updateWithVersion(current.getVersion(), CONTEXT, "counter", next, expiration());
+                done++;
+            } catch (VersionMismatchException e) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+
+    private static long expiration() {
+        return System.currentTimeMillis() + EXPIRATION_MILLIS;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        int run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,243 @@
+package uk.gov.ida.notification.session.storage;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RedisStorageServiceTest {
+
+    private static final String CONTEXT = "context";
+    private static final String KEY = "key";
+    private static final long EXPIRATION = System.currentTimeMillis() + 60_000;
+
+    private static RedisServer redisServer;
+    private static RedisClient redisClient;
+
+    private final AtomicInteger incrementAttempts = new AtomicInteger();
+    private StatefulRedisConnection<String, String> connection;
+    private RedisStorageService storageService;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        redisClient = RedisClient.create("redis://localhost:" + port);
+    }
+
+    @AfterClass
+    public static void stopRedis() {
+        redisClient.shutdown();
+        redisServer.stop();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        connection = redisClient.connect();
+        connection.sync().flushall();
+        storageService = new RedisStorageService(connection.sync(), connection.async());
+        storageService.setId("test-storage");
+        storageService.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        storageService.destroy();
+        connection.close();
+    }
+
+    @Test
+    public void createStoresRecordOnlyOnce() throws IOException {
+        assertThat(storageService.create(CONTEXT, KEY, "value", EXPIRATION)).isTrue();
+        assertThat(storageService.create(CONTEXT, KEY, "other", EXPIRATION)).isFalse();
+
+        StorageRecord record = storageService.read(CONTEXT, KEY);
+        assertThat(record.getValue()).isEqualTo("value");
+        assertThat(record.getVersion()).isEqualTo(1L);
+        assertThat(record.getExpiration()).isEqualTo(EXPIRATION);
+        assertThat(connection.sync().pttl(RedisStorageService.key(CONTEXT, KEY))).isPositive();
+    }
+
+    @Test
+    public void readWithVersionOnlyReturnsNewerRecords() throws IOException {
+        assertThat(storageService.read(CONTEXT, KEY, 1)).isEqualTo(new Pair<>(null, null));
+
+        storageService.create(CONTEXT, KEY, "value", EXPIRATION);
+        Pair<Long, StorageRecord> unchanged = storageService.read(CONTEXT, KEY, 1);
+        assertThat(unchanged.getFirst()).isEqualTo(1L);
+        assertThat(unchanged.getSecond()).isNull();
+
+        storageService.update(CONTEXT, KEY, "updated", EXPIRATION);
+        Pair<Long, StorageRecord> changed = storageService.read(CONTEXT, KEY, 1);
+        assertThat(changed.getFirst()).isEqualTo(2L);
+        assertThat(changed.getSecond().getValue()).isEqualTo("updated");
+    }
+
+    @Test
+    public void updateOnlyChangesExistingRecords() throws IOException {
+        assertThat(storageService.update(CONTEXT, KEY, "value", EXPIRATION)).isFalse();
+        assertThat(storageService.read(CONTEXT, KEY)).isNull();
+
+        storageService.create(CONTEXT, KEY, "value", EXPIRATION);
+        assertThat(storageService.update(CONTEXT, KEY, "updated", EXPIRATION + 1)).isTrue();
+
+        StorageRecord record = storageService.read(CONTEXT, KEY);
+        assertThat(record.getValue()).isEqualTo("updated");
+        assertThat(record.getVersion()).isEqualTo(2L);
+        assertThat(record.getExpiration()).isEqualTo(EXPIRATION + 1);
+    }
+
+    @Test
+    public void updateWithVersionChecksVersion() throws Exception {
+        assertThat(storageService.updateWithVersion(1, CONTEXT, KEY, "value", EXPIRATION)).isNull();
+
+        storageService.create(CONTEXT, KEY, "value", EXPIRATION);
+        assertThat(storageService.updateWithVersion(1, CONTEXT, KEY, "updated", EXPIRATION)).isEqualTo(2L);
+        assertThatThrownBy(() -> storageService.updateWithVersion(1, CONTEXT, KEY, "stale", EXPIRATION))
+                .isInstanceOf(VersionMismatchException.class);
+        assertThat(storageService.read(CONTEXT, KEY).getValue()).isEqualTo("updated");
+    }
+
+    @Test
+    public void updateExpirationOnlyChangesExistingRecords() throws IOException {
+        assertThat(storageService.updateExpiration(CONTEXT, KEY, EXPIRATION)).isFalse();
+
+        storageService.create(CONTEXT, KEY, "value", EXPIRATION);
+        assertThat(storageService.updateExpiration(CONTEXT, KEY, EXPIRATION + 1)).isTrue();
+        assertThat(storageService.read(CONTEXT, KEY).getExpiration()).isEqualTo(EXPIRATION + 1);
+    }
+
+    @Test
+    public void deleteWithVersionChecksVersion() throws Exception {
+        assertThat(storageService.deleteWithVersion(1, CONTEXT, KEY)).isFalse();
+
+        storageService.create(CONTEXT, KEY, "value", EXPIRATION);
+        assertThatThrownBy(() -> storageService.deleteWithVersion(2, CONTEXT, KEY))
+                .isInstanceOf(VersionMismatchException.class);
+        assertThat(storageService.deleteWithVersion(1, CONTEXT, KEY)).isTrue();
+        assertThat(storageService.read(CONTEXT, KEY)).isNull();
+    }
+
+    @Test
+    public void deleteContextOnlyRemovesRecordsInThatContext() throws IOException {
+        createRecords(CONTEXT, 1200);
+        storageService.create("other", KEY, "value", EXPIRATION);
+
+        storageService.deleteContext(CONTEXT);
+
+        assertThat(storageService.read(CONTEXT, KEY + 0)).isNull();
+        assertThat(storageService.read(CONTEXT, KEY + 1199)).isNull();
+        assertThat(storageService.read("other", KEY).getValue()).isEqualTo("value");
+    }
+
+    @Test
+    public void updateContextExpirationAppliesToEveryRecordInThatContext() throws IOException {
+        createRecords(CONTEXT, 1200);
+        storageService.create("other", KEY, "value", EXPIRATION);
+        long extendedExpiration = EXPIRATION + 3_600_000;
+
+        storageService.updateContextExpiration(CONTEXT, extendedExpiration);
+
+        for (int i = 0; i < 1200; i++) {
+            assertThat(connection.sync().pttl(RedisStorageService.key(CONTEXT, KEY + i))).isGreaterThan(3_600_000L);
+        }
+        assertThat(connection.sync().pttl(RedisStorageService.key("other", KEY))).isLessThanOrEqualTo(60_000L);
+    }
+
+    @Test
+    public void createPrunesExpiredRecordsFromTheContextIndex() {
+        // "Aa" and "BB" share a hash code, so both records land in the same index shard
+        storageService.create(CONTEXT, "Aa", "value", System.currentTimeMillis() - 1);
+        storageService.create(CONTEXT, "BB", "value", EXPIRATION);
+
+        List<String> indexes = connection.sync().keys("*#index");
+        assertThat(indexes).hasSize(1);
+        assertThat(connection.sync().zrange(indexes.get(0), 0, -1)).containsExactly(RedisStorageService.key(CONTEXT, "BB"));
+    }
+
+    @Test
+    public void recordsInAContextAreSpreadAcrossIndexShards() {
+        createRecords(CONTEXT, 100);
+
+        assertThat(connection.sync().keys("*#index").size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void scriptsAreReloadedIfRedisLosesThem() throws IOException {
+        connection.sync().scriptFlush();
+
+        assertThat(storageService.create(CONTEXT, KEY, "value", EXPIRATION)).isTrue();
+    }
+
+    @Test
+    public void optimisticUpdatesUnderContentionAreNotLost() throws Exception {
+        final int threads = 8;
+        final int updatesPerThread = 250;
+        storageService.create(CONTEXT, KEY, "0", EXPIRATION);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(() -> incrementRepeatedly(updatesPerThread));
+        }
+
+        int conflicts = 0;
+        for (Future<Integer> result : executor.invokeAll(workers)) {
+            conflicts += result.get();
+        }
+        executor.shutdown();
+
+        StorageRecord record = storageService.read(CONTEXT, KEY);
+        int lostUpdates = threads * updatesPerThread - Integer.parseInt(record.getValue());
+        assertThat(lostUpdates).isZero();
+        assertThat(record.getVersion()).isEqualTo(1L + threads * updatesPerThread);
+        // Every attempt either applied or was reported as a version conflict; none was silently dropped
+        assertThat(incrementAttempts.get()).isEqualTo(threads * updatesPerThread + conflicts);
+    }
+
+    private void createRecords(String context, int count) {
+        for (int i = 0; i < count; i++) {
+            storageService.create(context, KEY + i, "value", EXPIRATION);
+        }
+    }
+
+    private int incrementRepeatedly(int updates) throws IOException {
+        int conflicts = 0;
+        for (int done = 0; done < updates; ) {
+            StorageRecord current = storageService.read(CONTEXT, KEY);
+            String next = Integer.toString(Integer.parseInt(current.getValue()) + 1);
+            try {
+                incrementAttempts.incrementAndGet();
+                storageService.updateWithVersion(current.getVersion(), CONTEXT, KEY, next, EXPIRATION);
+                done++;
+            } catch (VersionMismatchException e) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+}
@@ -0,0 +1,156 @@
+package uk.gov.ida.notification.shared.proxy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import io.dropwizard.testing.junit.DropwizardClientRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import uk.gov.ida.jerseyclient.ErrorHandlingClient;
+import uk.gov.ida.jerseyclient.JsonResponseProcessor;
+import uk.gov.ida.notification.configuration.MetatronCacheConfiguration;
+import uk.gov.ida.notification.contracts.metadata.AssertionConsumerService;
+import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
+import uk.gov.ida.notification.exceptions.proxy.MetatronResponseException;
+import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CachingMetatronProxyTest {
+
+    private static final String TEST_ENTITY_ID = "https://test-entity-id.com";
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    @ClassRule
+    public static final DropwizardClientRule testMetatronClientRule = new DropwizardClientRule(new CountingMetatronResource());
+
+    private final MutableTicker ticker = new MutableTicker();
+    private CachingMetatronProxy metatronProxy;
+
+    @Before
+    public void setUp() {
+        requests.set(0);
+        metatronProxy = new CachingMetatronProxy(
+                UriBuilder.fromUri(testMetatronClientRule.baseUri()).build(),
+                new ProxyNodeJsonClient(
+                        new ErrorHandlingClient(ClientBuilder.newClient()),
+                        new JsonResponseProcessor(new ObjectMapper()),
+                        new IstioHeaderStorage()),
+                new MetatronCacheConfiguration(),
+                Runnable::run,
+                ticker);
+    }
+
+    @Test
+    public void shouldOnlyRequestEachEntityIdOnceWithinRefreshInterval() {
+        CountryMetadataResponse first = metatronProxy.getCountryMetadata(TEST_ENTITY_ID);
+        CountryMetadataResponse second = metatronProxy.getCountryMetadata(TEST_ENTITY_ID);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getEntityId()).isEqualTo(TEST_ENTITY_ID);
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRefreshEntriesOlderThanRefreshInterval() {
+        metatronProxy.getCountryMetadata(TEST_ENTITY_ID);
+
+        ticker.advance(61, TimeUnit.SECONDS);
+        metatronProxy.getCountryMetadata(TEST_ENTITY_ID);
+
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRefetchAfterInvalidation() {
+        metatronProxy.getCountryMetadata(TEST_ENTITY_ID);
+
+        metatronProxy.invalidate(TEST_ENTITY_ID);
+        metatronProxy.getCountryMetadata(TEST_ENTITY_ID);
+
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentMisses() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<CountryMetadataResponse>> lookups = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            lookups.add(() -> metatronProxy.getCountryMetadata(TEST_ENTITY_ID));
+        }
+
+        for (Future<CountryMetadataResponse> result : executor.invokeAll(lookups)) {
+            assertThat(result.get().getEntityId()).isEqualTo(TEST_ENTITY_ID);
+        }
+        executor.shutdown();
+
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldThrowMetatronResponseExceptionUnwrapped() {
+        MetatronResponseException exception = assertThrows(MetatronResponseException.class,
+                () -> metatronProxy.getCountryMetadata("error"));
+
+        assertThat(exception.getResponseStatus()).isEqualTo(Response.Status.BAD_REQUEST);
+    }
+
+    private static class MutableTicker extends Ticker {
+
+        private long nanos = 0;
+
+        private void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+
+    @Path("/metadata")
+    @Produces(MediaType.APPLICATION_JSON)
+    public static class CountingMetatronResource {
+
+        @GET
+        @Path("{entityId}")
+        public Response getCountryMetadata(@PathParam("entityId") String entityId) throws Exception {
+            requests.incrementAndGet();
+            String decodedEntityId = URLDecoder.decode(entityId, StandardCharsets.UTF_8.toString());
+            if ("error".equals(decodedEntityId)) {
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            }
+            Thread.sleep(50);
+            return Response.ok(new CountryMetadataResponse(
+                    "SAMLSIGNINGCERTX509",
+                    "SAMLENCRYPTIONCERTX509",
+                    Collections.singletonList(new AssertionConsumerService(URI.create("https://destination.gov.uk"), 0, true)),
+                    decodedEntityId,
+                    "CC"
+            )).build();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package uk.gov.ida.notification.shared.proxy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import uk.gov.ida.notification.contracts.metadata.MetadataChanges;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetatronChangeWatcherTest {
+
+    private static final URI METATRON_URI = URI.create("http://metatron");
+    private static final String COUNTRY = "https://country.example.com/metadata";
+
+    private final ProxyNodeJsonClient metatronClient = mock(ProxyNodeJsonClient.class);
+    private final CachingMetatronProxy metatronProxy = mock(CachingMetatronProxy.class);
+    private MetatronChangeWatcher watcher;
+
+    @Before
+    public void setUp() {
+        watcher = new MetatronChangeWatcher(METATRON_URI, metatronClient, metatronProxy);
+    }
+
+    @Test
+    public void shouldEvictOnlyTheCountriesThatChanged() {
+        respondWith(new MetadataChanges("v2", true, List.of(COUNTRY)));
+
+        watcher.pollOnce();
+
+        verify(metatronProxy).invalidate(COUNTRY);
+        verify(metatronProxy, never()).invalidateAll();
+        assertThat(watcher.resyncDelayMillis()).isZero();
+    }
+
+    @Test
+    public void shouldEvictEverythingWhenChangesAreIncomplete() {
+        respondWith(new MetadataChanges("v2", false, List.of()));
+
+        watcher.pollOnce();
+
+        verify(metatronProxy).invalidateAll();
+    }
+
+    @Test
+    public void shouldPollFromTheLastVersionSeen() {
+        respondWith(new MetadataChanges("v1", false, List.of()), new MetadataChanges("v2", true, List.of()));
+
+        watcher.pollOnce();
+        watcher.pollOnce();
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(metatronClient, times(2)).get(uris.capture(), eq(MetadataChanges.class));
+        assertThat(uris.getAllValues().get(0).getQuery()).contains("version=&");
+        assertThat(uris.getAllValues().get(1).getQuery()).contains("version=v1");
+    }
+
+    @Test
+    public void shouldBackOffWhileResyncsRepeat() {
+        MetadataChanges incomplete = new MetadataChanges("v1", false, List.of());
+        respondWith(incomplete);
+
+        watcher.pollOnce();
+        assertThat(watcher.resyncDelayMillis()).isZero();
+        watcher.pollOnce();
+        assertThat(watcher.resyncDelayMillis()).isEqualTo(1_000);
+        watcher.pollOnce();
+        assertThat(watcher.resyncDelayMillis()).isEqualTo(2_000);
+        for (int i = 0; i < 20; i++) {
+            watcher.pollOnce();
+        }
+        assertThat(watcher.resyncDelayMillis()).isEqualTo(60_000);
+
+        respondWith(new MetadataChanges("v1", true, List.of()));
+        watcher.pollOnce();
+        assertThat(watcher.resyncDelayMillis()).isZero();
+    }
+
+    private void respondWith(MetadataChanges first, MetadataChanges... rest) {
+        when(metatronClient.get(any(URI.class), eq(MetadataChanges.class))).thenReturn(first, rest);
+    }
+}
@@ -2,8 +2,6 @@ package uk.gov.ida.notification.translator;
 
 import engineering.reliability.gds.metrics.bundle.PrometheusBundle;
 import io.dropwizard.Application;
-import io.dropwizard.client.JerseyClientBuilder;
-import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
 import io.dropwizard.setup.Bootstrap;
@@ -14,22 +12,24 @@ import org.opensaml.core.config.InitializationException;
 import org.opensaml.core.config.InitializationService;
 import uk.gov.ida.common.shared.security.X509CertificateFactory;
 import uk.gov.ida.dropwizard.logstash.LogstashBundle;
-import uk.gov.ida.jerseyclient.ErrorHandlingClient;
-import uk.gov.ida.jerseyclient.JsonResponseProcessor;
 import uk.gov.ida.notification.VerifySamlInitializer;
 import uk.gov.ida.notification.configuration.CredentialConfiguration;
+import uk.gov.ida.notification.configuration.SigningServiceConfiguration;
 import uk.gov.ida.notification.exceptions.mappers.ApplicationExceptionMapper;
 import uk.gov.ida.notification.exceptions.mappers.CatchAllExceptionMapper;
 import uk.gov.ida.notification.exceptions.mappers.JsonErrorResponseRuntimeExceptionMapper;
 import uk.gov.ida.notification.exceptions.mappers.JsonErrorResponseValidationExceptionMapper;
+import uk.gov.ida.notification.healthcheck.HsmKeyPoolHealthCheck;
 import uk.gov.ida.notification.healthcheck.ProxyNodeHealthCheck;
+import uk.gov.ida.notification.saml.BatchingSignatureCreator;
 import uk.gov.ida.notification.saml.EidasResponseBuilder;
+import uk.gov.ida.notification.saml.HsmKeyPool;
 import uk.gov.ida.notification.saml.SamlObjectSigner;
+import uk.gov.ida.notification.saml.SignatureCreator;
 import uk.gov.ida.notification.shared.istio.IstioHeaderMapperFilter;
 import uk.gov.ida.notification.shared.istio.IstioHeaderStorage;
 import uk.gov.ida.notification.shared.logging.ProxyNodeLoggingFilter;
 import uk.gov.ida.notification.shared.proxy.MetatronProxy;
-import uk.gov.ida.notification.shared.proxy.ProxyNodeJsonClient;
 import uk.gov.ida.notification.shared.proxy.VerifyServiceProviderProxy;
 import uk.gov.ida.notification.translator.configuration.TranslatorConfiguration;
 import uk.gov.ida.notification.translator.resources.HubResponseTranslatorResource;
@@ -37,7 +37,6 @@ import uk.gov.ida.notification.translator.saml.EidasFailureResponseGenerator;
 import uk.gov.ida.notification.translator.saml.EidasResponseGenerator;
 import uk.gov.ida.notification.translator.saml.HubResponseTranslator;
 
-import javax.ws.rs.client.Client;
 
 public class TranslatorApplication extends Application<TranslatorConfiguration> {
     public static void main(String[] args) throws Exception {
@@ -122,7 +121,7 @@ public class TranslatorApplication extends Application<TranslatorConfiguration>
 
     private EidasResponseGenerator createEidasResponseGenerator(TranslatorConfiguration configuration, Environment environment) {
 
-        MetatronProxy metatronProxy = createMetatronProxy(configuration, environment);
+        MetatronProxy metatronProxy = configuration.getMetatronCache().buildMetatronProxy(configuration.getMetatronUri(), environment);
 
         final HubResponseTranslator hubResponseTranslator = new HubResponseTranslator(
                 EidasResponseBuilder::instance,
@@ -135,7 +134,8 @@ public class TranslatorApplication extends Application<TranslatorConfiguration>
 
         final CredentialConfiguration credentialConfiguration = configuration.getCredentialConfiguration();
         final SamlObjectSigner samlObjectSigner = new SamlObjectSigner(credentialConfiguration.getCredential(),
-                credentialConfiguration.getAlgorithm(), credentialConfiguration.getKeyHandle());
+                credentialConfiguration.getAlgorithm(), credentialConfiguration::getKeyHandle, configuration.getSignatureSelfVerification(),
+                createSignatureCreator(credentialConfiguration, configuration.getSigningService(), environment));
 
         return new EidasResponseGenerator(
                 hubResponseTranslator,
@@ -146,15 +146,19 @@ public class TranslatorApplication extends Application<TranslatorConfiguration>
         );
     }
 
-    private MetatronProxy createMetatronProxy(TranslatorConfiguration configuration, Environment environment) {
-        JerseyClientConfiguration jerseyConfig = new JerseyClientConfiguration();
-        Client client = new JerseyClientBuilder(environment).using(jerseyConfig).build("metatron-client");
-        return new MetatronProxy(configuration.getMetatronUri(),
-            new ProxyNodeJsonClient(
-                    new ErrorHandlingClient(client),
-                    new JsonResponseProcessor(environment.getObjectMapper()),
-                    new IstioHeaderStorage()
-            )
-        );
+    private SignatureCreator createSignatureCreator(CredentialConfiguration credentialConfiguration, SigningServiceConfiguration signingServiceConfiguration, Environment environment) {
+        final SignatureCreator credentialSignatureCreator = credentialConfiguration.getSignatureCreator();
+        if (credentialSignatureCreator instanceof HsmKeyPool) {
+            final HsmKeyPool hsmKeyPool = (HsmKeyPool) credentialSignatureCreator;
+            final HsmKeyPoolHealthCheck hsmKeyPoolHealthCheck = new HsmKeyPoolHealthCheck(hsmKeyPool);
+            environment.lifecycle().manage(hsmKeyPool);
+            environment.healthChecks().register(hsmKeyPoolHealthCheck.getName(), hsmKeyPoolHealthCheck);
+        }
+        if (!signingServiceConfiguration.isEnabled()) {
+            return credentialSignatureCreator;
+        }
+        BatchingSignatureCreator batchingSignatureCreator = new BatchingSignatureCreator(signingServiceConfiguration, credentialSignatureCreator);
+        environment.lifecycle().manage(batchingSignatureCreator);
+        return batchingSignatureCreator;
     }
 }
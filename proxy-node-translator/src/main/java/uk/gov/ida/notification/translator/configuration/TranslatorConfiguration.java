@@ -4,6 +4,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import engineering.reliability.gds.metrics.config.PrometheusConfiguration;
 import io.dropwizard.Configuration;
 import uk.gov.ida.notification.configuration.CredentialConfiguration;
+import uk.gov.ida.notification.configuration.MetatronCacheConfiguration;
+import uk.gov.ida.notification.configuration.SignatureSelfVerificationConfiguration;
+import uk.gov.ida.notification.configuration.SigningServiceConfiguration;
 import uk.gov.ida.notification.configuration.VerifyServiceProviderConfiguration;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -25,10 +28,25 @@ public class TranslatorConfiguration extends Configuration implements Prometheus
     @JsonProperty
     private URI metatronUri;
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private MetatronCacheConfiguration metatronCache = new MetatronCacheConfiguration();
+
     @NotNull
     @JsonProperty
     private URI proxyNodeEntityId;
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private SignatureSelfVerificationConfiguration signatureSelfVerification = new SignatureSelfVerificationConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private SigningServiceConfiguration signingService = new SigningServiceConfiguration();
+
     public VerifyServiceProviderConfiguration getVspConfiguration() {
         return vspConfiguration;
     }
@@ -46,7 +64,19 @@ public class TranslatorConfiguration extends Configuration implements Prometheus
         return metatronUri;
     }
 
+    public MetatronCacheConfiguration getMetatronCache() {
+        return metatronCache;
+    }
+
     public URI getProxyNodeEntityId() {
         return proxyNodeEntityId;
     }
+
+    public SignatureSelfVerificationConfiguration getSignatureSelfVerification() {
+        return signatureSelfVerification;
+    }
+
+    public SigningServiceConfiguration getSigningService() {
+        return signingService;
+    }
 }
@@ -1,6 +1,5 @@
 package uk.gov.ida.notification.translator.resources;
 
-import org.glassfish.jersey.internal.util.Base64;
 import uk.gov.ida.eidas.logging.EidasAuthnResponseAttributesHashLogger;
 import uk.gov.ida.notification.contracts.HubResponseTranslatorRequest;
 import uk.gov.ida.notification.contracts.SamlFailureResponseGenerationRequest;
@@ -20,8 +19,11 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.util.Objects;
 
 @Path(Urls.TranslatorUrls.TRANSLATOR_ROOT)
@@ -42,7 +44,8 @@ public class HubResponseTranslatorResource {
     @POST
     @IngressEgressLogging
     @Path(Urls.TranslatorUrls.TRANSLATE_HUB_RESPONSE_PATH)
-    public Response hubResponse(@Valid HubResponseTranslatorRequest hubResponseTranslatorRequest) {
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_OCTET_STREAM})
+    public Response hubResponse(@Valid HubResponseTranslatorRequest hubResponseTranslatorRequest, @Context HttpHeaders headers) {
 
         final TranslatedHubResponse translatedHubResponse = getAttributesFromVSP(hubResponseTranslatorRequest);
 
@@ -56,9 +59,7 @@ public class HubResponseTranslatorResource {
 
         logSamlResponse(eidasResponse);
 
-        final String samlMessage = Base64.encodeAsString(MARSHALLER.transformToString(eidasResponse));
-
-        return Response.ok().entity(samlMessage).build();
+        return buildSamlResponse(eidasResponse, headers);
     }
 
     private TranslatedHubResponse getAttributesFromVSP(@Valid HubResponseTranslatorRequest hubResponseTranslatorRequest) {
@@ -74,7 +75,8 @@ public class HubResponseTranslatorResource {
     @POST
     @IngressEgressLogging
     @Path(Urls.TranslatorUrls.GENERATE_FAILURE_RESPONSE_PATH)
-    public Response failureResponse(@Valid SamlFailureResponseGenerationRequest failureResponseRequest) {
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_OCTET_STREAM})
+    public Response failureResponse(@Valid SamlFailureResponseGenerationRequest failureResponseRequest, @Context HttpHeaders headers) {
 
         final org.opensaml.saml.saml2.core.Response failureEidasResponse = eidasResponseGenerator.generateFailureResponse(
                 failureResponseRequest.getResponseStatus(),
@@ -84,9 +86,26 @@ public class HubResponseTranslatorResource {
 
         logSamlResponse(failureEidasResponse);
 
-        final String samlMessage = Base64.encodeAsString(MARSHALLER.transformToString(failureEidasResponse));
+        return buildSamlResponse(failureEidasResponse, headers);
+    }
+
+    // Callers that explicitly accept octet-stream get the raw XML, written straight to the connection;
+    // everyone else gets the Base64 string as before
+    private Response buildSamlResponse(org.opensaml.saml.saml2.core.Response samlResponse, HttpHeaders headers) {
+        if (acceptsRawSaml(headers)) {
+            final StreamingOutput samlXml = output -> MARSHALLER.writeTo(samlResponse, output);
+            return Response.ok(samlXml, MediaType.APPLICATION_OCTET_STREAM_TYPE).build();
+        }
+
+        final String samlMessage = MARSHALLER.transformToBase64(samlResponse);
+
+        return Response.ok(samlMessage, MediaType.APPLICATION_JSON_TYPE).build();
+    }
 
-        return Response.ok().entity(samlMessage).build();
+    private static boolean acceptsRawSaml(HttpHeaders headers) {
+        return headers.getAcceptableMediaTypes().stream()
+                .anyMatch(mediaType -> mediaType.getType().equalsIgnoreCase("application")
+                        && mediaType.getSubtype().equalsIgnoreCase("octet-stream"));
     }
 
     // TODO: Remove once we set all the headers correctly
@@ -3,13 +3,11 @@ package uk.gov.ida.notification.translator.saml;
 import org.opensaml.core.xml.io.MarshallingException;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.security.SecurityException;
-import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.xmlsec.signature.support.SignatureException;
 
 import uk.gov.ida.common.shared.security.X509CertificateFactory;
 import uk.gov.ida.notification.contracts.metadata.CountryMetadataResponse;
 import uk.gov.ida.notification.exceptions.hubresponse.ResponseSigningException;
-import uk.gov.ida.notification.saml.ResponseAssertionEncrypter;
 import uk.gov.ida.notification.saml.SamlObjectSigner;
 import uk.gov.ida.notification.shared.proxy.MetatronProxy;
 
@@ -20,7 +18,7 @@ public class EidasResponseGenerator {
     private final EidasFailureResponseGenerator failureResponseGenerator;
     private final SamlObjectSigner samlObjectSigner;
     private final MetatronProxy metatronProxy;
-    private final X509CertificateFactory x509CertificateFactory;
+    private final ResponseAssertionEncrypterCache responseAssertionEncrypters;
 
     public EidasResponseGenerator(
             final HubResponseTranslator hubResponseTranslator,
@@ -32,13 +30,14 @@ public class EidasResponseGenerator {
         this.failureResponseGenerator = failureResponseGenerator;
         this.samlObjectSigner = samlObjectSigner;
         this.metatronProxy = metatronProxy;
-        this.x509CertificateFactory = x509CertificateFactory;
+        this.responseAssertionEncrypters = new ResponseAssertionEncrypterCache(x509CertificateFactory);
     }
 
     public Response generateFromHubResponse(final HubResponseContainer hubResponseContainer) {
-        final CountryMetadataResponse countryMetadataResponse = metatronProxy.getCountryMetadata(hubResponseContainer.getConnectorEntityId().toString());
+        final String connectorEntityId = hubResponseContainer.getConnectorEntityId().toString();
+        final CountryMetadataResponse countryMetadataResponse = metatronProxy.getCountryMetadata(connectorEntityId);
         final Response eidasResponse = hubResponseTranslator.getTranslatedHubResponse(hubResponseContainer, countryMetadataResponse);
-        final Response encryptedEidasResponse = encryptAssertions(eidasResponse, countryMetadataResponse.getSamlEncryptionCertX509());
+        final Response encryptedEidasResponse = encryptAssertions(eidasResponse, connectorEntityId, countryMetadataResponse.getSamlEncryptionCertX509());
 
         return signSamlResponse(encryptedEidasResponse, hubResponseContainer.getEidasRequestId());
     }
@@ -58,12 +57,8 @@ public class EidasResponseGenerator {
         return signSamlResponse(eidasResponse, eidasRequestId);
     }
 
-    private Response encryptAssertions(final Response eidasResponse, final String encryptionCertificate) {
-        return new ResponseAssertionEncrypter(
-                new BasicX509Credential(
-                        x509CertificateFactory.createCertificate(encryptionCertificate)
-                )
-        ).encrypt(eidasResponse);
+    private Response encryptAssertions(final Response eidasResponse, final String connectorEntityId, final String encryptionCertificate) {
+        return responseAssertionEncrypters.getEncrypter(connectorEntityId, encryptionCertificate).encrypt(eidasResponse);
     }
 
     private Response signSamlResponse(final Response eidasResponse, final String eidasRequestId) {
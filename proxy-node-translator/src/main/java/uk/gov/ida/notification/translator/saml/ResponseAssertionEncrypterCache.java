@@ -0,0 +1,69 @@
+package uk.gov.ida.notification.translator.saml;
+
+import org.opensaml.security.x509.BasicX509Credential;
+import uk.gov.ida.common.shared.security.X509CertificateFactory;
+import uk.gov.ida.notification.saml.ResponseAssertionEncrypter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one ready-built ResponseAssertionEncrypter per connector. Each is kept alongside the
+ * SHA-256 fingerprint of the certificate it was built from, so that a connector whose
+ * certificate changes has its encrypter replaced on its next response. The cache holds at
+ * most one entry per connector and needs no other bound.
+ */
+public class ResponseAssertionEncrypterCache {
+
+    private final X509CertificateFactory x509CertificateFactory;
+    private final Map<String, FingerprintedEncrypter> encrypters = new ConcurrentHashMap<>();
+
+    public ResponseAssertionEncrypterCache(X509CertificateFactory x509CertificateFactory) {
+        this.x509CertificateFactory = x509CertificateFactory;
+    }
+
+    public ResponseAssertionEncrypter getEncrypter(String connectorEntityId, String encryptionCertificate) {
+        byte[] fingerprint = fingerprint(encryptionCertificate);
+        FingerprintedEncrypter current = encrypters.get(connectorEntityId);
+        if (current != null && current.isFor(fingerprint)) {
+            return current.encrypter;
+        }
+        return encrypters.compute(connectorEntityId, (entityId, existing) -> existing != null && existing.isFor(fingerprint)
+                ? existing
+                : new FingerprintedEncrypter(fingerprint, createEncrypter(encryptionCertificate))).encrypter;
+    }
+
+    private ResponseAssertionEncrypter createEncrypter(String encryptionCertificate) {
+        return new ResponseAssertionEncrypter(
+                new BasicX509Credential(
+                        x509CertificateFactory.createCertificate(encryptionCertificate)
+                )
+        );
+    }
+
+    private static byte[] fingerprint(String encryptionCertificate) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(Base64.getMimeDecoder().decode(encryptionCertificate));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class FingerprintedEncrypter {
+        private final byte[] fingerprint;
+        private final ResponseAssertionEncrypter encrypter;
+
+        private FingerprintedEncrypter(byte[] fingerprint, ResponseAssertionEncrypter encrypter) {
+            this.fingerprint = fingerprint;
+            this.encrypter = encrypter;
+        }
+
+        private boolean isFor(byte[] certificateFingerprint) {
+            return Arrays.equals(fingerprint, certificateFingerprint);
+        }
+    }
+}
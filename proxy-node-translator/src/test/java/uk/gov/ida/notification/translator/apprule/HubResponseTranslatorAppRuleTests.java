@@ -46,8 +46,10 @@ import uk.gov.ida.saml.security.CredentialFactorySignatureValidator;
 import uk.gov.ida.saml.security.SigningCredentialFactory;
 
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -239,6 +241,48 @@ public class HubResponseTranslatorAppRuleTests extends TranslatorAppRuleTestBase
         assertThat(response.getStatus().getStatusCode().getValue()).isEqualTo("urn:oasis:names:tc:SAML:2.0:status:Requester");
     }
 
+    @Test
+    public void shouldStreamTheRawSignedEidasResponseToOctetStreamCallers() throws Exception {
+        javax.ws.rs.core.Response translatorResponse = postHubResponseToTranslator(
+                translatorAppRule, buildSignedHubResponse(), URI.create(CONNECTOR_ENTITY_ID), URI.create(CONNECTOR_ENTITY_DESTINATION), MediaType.APPLICATION_OCTET_STREAM_TYPE);
+
+        assertThat(translatorResponse.getMediaType().isCompatible(MediaType.APPLICATION_OCTET_STREAM_TYPE)).isTrue();
+        String samlXml = new String(translatorResponse.readEntity(byte[].class), StandardCharsets.UTF_8);
+        Response eidasResponse = new SamlParser().parseSamlString(samlXml);
+
+        assertThat(eidasResponse.getInResponseTo()).isEqualTo(ResponseBuilder.DEFAULT_REQUEST_ID);
+        assertSignedByTranslator(eidasResponse);
+    }
+
+    @Test
+    public void shouldReturnBase64EncodedEidasResponseToJsonCallers() throws Exception {
+        javax.ws.rs.core.Response translatorResponse = postHubResponseToTranslator(
+                translatorAppRule, buildSignedHubResponse(), URI.create(CONNECTOR_ENTITY_ID), URI.create(CONNECTOR_ENTITY_DESTINATION), MediaType.APPLICATION_JSON_TYPE);
+
+        assertThat(translatorResponse.getMediaType().isCompatible(MediaType.APPLICATION_JSON_TYPE)).isTrue();
+        Response eidasResponse = new SamlParser().parseSamlString(Base64.decodeAsString(translatorResponse.readEntity(String.class)));
+
+        assertThat(eidasResponse.getInResponseTo()).isEqualTo(ResponseBuilder.DEFAULT_REQUEST_ID);
+        assertSignedByTranslator(eidasResponse);
+    }
+
+    @Test
+    public void failureResponseEndpointShouldStreamTheRawSignedSamlToOctetStreamCallers() throws Exception {
+        var failureResponseGenerationRequest = new SamlFailureResponseGenerationRequest(
+                BAD_REQUEST, "this_a_badly_generated_saml_request", "http://destinationUrl", URI.create("http://entityId")
+        );
+        var failureResponse = translatorAppRule
+                .target(Urls.TranslatorUrls.TRANSLATOR_ROOT + Urls.TranslatorUrls.GENERATE_FAILURE_RESPONSE_PATH)
+                .request(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                .post(Entity.json(failureResponseGenerationRequest));
+
+        assertThat(failureResponse.getMediaType().isCompatible(MediaType.APPLICATION_OCTET_STREAM_TYPE)).isTrue();
+        Response response = new SamlParser().parseSamlString(new String(failureResponse.readEntity(byte[].class), StandardCharsets.UTF_8));
+
+        assertThat(response.getStatus().getStatusCode().getValue()).isEqualTo("urn:oasis:names:tc:SAML:2.0:status:Requester");
+        assertSignedByTranslator(response);
+    }
+
     @Test
     public void shouldRespondWithDifferentEidasIssuerEntityIds() throws Exception {
         Response response1 = extractEidasResponseFromTranslator(
@@ -289,6 +333,14 @@ public class HubResponseTranslatorAppRuleTests extends TranslatorAppRuleTestBase
                                                                   Response hubResponse,
                                                                   URI eidasIssuerEntityId,
                                                                   URI destination) throws Exception {
+        return postHubResponseToTranslator(translatorAppRule, hubResponse, eidasIssuerEntityId, destination, MediaType.WILDCARD_TYPE);
+    }
+
+    private javax.ws.rs.core.Response postHubResponseToTranslator(AppRule<TranslatorConfiguration> translatorAppRule,
+                                                                  Response hubResponse,
+                                                                  URI eidasIssuerEntityId,
+                                                                  URI destination,
+                                                                  MediaType accept) throws Exception {
         String encodedResponse = Base64.encodeAsString(MARSHALLER.transformToString(hubResponse));
 
         HubResponseTranslatorRequest hubResponseTranslatorRequest =
@@ -302,16 +354,33 @@ public class HubResponseTranslatorAppRuleTests extends TranslatorAppRuleTestBase
                         false
                 );
 
-        return postToTranslator(translatorAppRule, hubResponseTranslatorRequest,  Urls.TranslatorUrls.TRANSLATE_HUB_RESPONSE_PATH);
+        return postToTranslator(translatorAppRule, hubResponseTranslatorRequest,  Urls.TranslatorUrls.TRANSLATE_HUB_RESPONSE_PATH, accept);
     }
 
     private javax.ws.rs.core.Response postToTranslator(AppRule<TranslatorConfiguration> translatorAppRule, HubResponseTranslatorRequest hubResponseTranslatorRequest, String response_path) throws URISyntaxException {
+        return postToTranslator(translatorAppRule, hubResponseTranslatorRequest, response_path, MediaType.WILDCARD_TYPE);
+    }
+
+    private javax.ws.rs.core.Response postToTranslator(AppRule<TranslatorConfiguration> translatorAppRule, HubResponseTranslatorRequest hubResponseTranslatorRequest, String response_path, MediaType accept) throws URISyntaxException {
         return translatorAppRule
                 .target(Urls.TranslatorUrls.TRANSLATOR_ROOT + response_path)
-                .request()
+                .request(accept)
                 .post(Entity.json(hubResponseTranslatorRequest));
     }
 
+    private void assertSignedByTranslator(Response response) throws Exception {
+        Credential signingCredential = translatorAppRule.getConfiguration().getCredentialConfiguration().getCredential();
+        CredentialFactorySignatureValidator signatureValidator = new CredentialFactorySignatureValidator(new SigningCredentialFactory(
+                entityId -> Collections.singletonList(signingCredential.getPublicKey())));
+
+        assertThat(response.getSignature())
+                .withFailMessage("SAML Response needs to be signed")
+                .isNotNull();
+        assertThat(signatureValidator.validate(response, null, Response.DEFAULT_ELEMENT_NAME))
+                .withFailMessage("Invalid signature")
+                .isTrue();
+    }
+
     private static Response decryptResponse(Response response, Credential credential) throws Exception {
         ResponseAssertionDecrypter decrypter = new ResponseAssertionDecrypter(credential);
         return decrypter.decrypt(response);
@@ -0,0 +1,53 @@
+package uk.gov.ida.notification.translator.saml;
+
+import org.junit.Test;
+import uk.gov.ida.common.shared.security.X509CertificateFactory;
+import uk.gov.ida.notification.SamlInitializedTest;
+import uk.gov.ida.notification.saml.ResponseAssertionEncrypter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.HUB_TEST_PUBLIC_ENCRYPTION_CERT;
+import static uk.gov.ida.saml.core.test.TestCertificateStrings.TEST_RP_PUBLIC_ENCRYPTION_CERT;
+
+public class ResponseAssertionEncrypterCacheTest extends SamlInitializedTest {
+
+    private static final String CONNECTOR = "https://connector.example.com/metadata";
+    private static final String OTHER_CONNECTOR = "https://other-connector.example.com/metadata";
+
+    private final ResponseAssertionEncrypterCache cache = new ResponseAssertionEncrypterCache(new X509CertificateFactory());
+
+    @Test
+    public void shouldReuseEncrypterForSameCertificate() {
+        ResponseAssertionEncrypter first = cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT);
+        ResponseAssertionEncrypter second = cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void shouldRecogniseSameCertificateWhateverItsLineBreaks() {
+        ResponseAssertionEncrypter first = cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT);
+        ResponseAssertionEncrypter second = cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT.replaceAll("\\s", ""));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void shouldReplaceEncrypterWhenConnectorCertificateChanges() {
+        ResponseAssertionEncrypter beforeRotation = cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT);
+        ResponseAssertionEncrypter afterRotation = cache.getEncrypter(CONNECTOR, HUB_TEST_PUBLIC_ENCRYPTION_CERT);
+
+        assertThat(afterRotation).isNotSameAs(beforeRotation);
+        assertThat(cache.getEncrypter(CONNECTOR, HUB_TEST_PUBLIC_ENCRYPTION_CERT)).isSameAs(afterRotation);
+        assertThat(cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT)).isNotSameAs(beforeRotation);
+    }
+
+    @Test
+    public void shouldKeepEncryptersForEachConnectorSeparately() {
+        ResponseAssertionEncrypter connectorEncrypter = cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT);
+        ResponseAssertionEncrypter otherConnectorEncrypter = cache.getEncrypter(OTHER_CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT);
+
+        assertThat(otherConnectorEncrypter).isNotSameAs(connectorEncrypter);
+        assertThat(cache.getEncrypter(CONNECTOR, TEST_RP_PUBLIC_ENCRYPTION_CERT)).isSameAs(connectorEncrypter);
+    }
+}